@@ -0,0 +1,25 @@
+package tasktracker.api;
+
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.util.List;
+
+/* Тело POST /tasks/batch: одна операция над пакетом задач.
+   CREATE - tasks, epics, subtasks (id назначает сервер; id эпика в пакете служит только ссылкой для его подзадач),
+   UPDATE - tasks, epics, subtasks с id, REMOVE - ids задач любого типа. */
+final class BatchRequest {
+
+    enum Operation {
+        CREATE,
+        UPDATE,
+        REMOVE
+    }
+
+    Operation operation;
+    List<Task> tasks;
+    List<Epic> epics;
+    List<Subtask> subtasks;
+    List<Integer> ids;
+}
@@ -0,0 +1,8 @@
+package tasktracker.api;
+
+// Как HttpTaskServer выполняет запросы
+public enum ExecutorMode {
+    FIXED,         // ограниченный пул платформенных потоков
+    WORK_STEALING, // ForkJoinPool по числу ядер
+    VIRTUAL        // виртуальный поток на запрос (Java 21+), на старых рантаймах - WORK_STEALING
+}
@@ -2,215 +2,556 @@ package tasktracker.api;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import tasktracker.exceptions.NonExistentTaskException;
+import tasktracker.exceptions.TaskTimeValidationException;
 import tasktracker.managers.Managers;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.taskmanager.DurabilityPolicy;
 import tasktracker.taskmanager.TaskManager;
 import tasktracker.tasks.Epic;
 import tasktracker.tasks.Subtask;
 import tasktracker.tasks.Task;
 import tasktracker.tasks.TaskStatuses;
+import tasktracker.tasks.TaskTypes;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Type;
+import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 public class HttpTaskServer {
 
-    private static final int PORT = 8080;
+    public static final int PORT = 8080;
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    // Коллекции больше этого размера отдаются потоком, меньше - одним блоком с Content-Length
+    private static final int STREAMING_THRESHOLD = 256;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // Размер страницы по умолчанию и максимальный
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1_000;
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    // Кэш готовых ответов: размер по умолчанию и наибольший размер списка, который сериализуется в кэш
+    private static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final int CACHE_MAX_ITEMS = 20_000;
+    // Теги кэша: от каких данных зависит ответ
+    private static final String TASKS_TAG = "tasks";
+    private static final String EPICS_TAG = "epics";
+    private static final String SUBTASKS_TAG = "subtasks";
+    private static final String EPIC_VIEWS_TAG = "epic-views";
+    private static final String EPIC_TAG_PREFIX = "epic:";
+    private static final String[] BOARD_TAGS = {TASKS_TAG, EPICS_TAG, SUBTASKS_TAG};
     private static Gson gson = new GsonBuilder()
             .serializeNulls()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .create();
-    private static TaskManager manager = Managers.getDefaultFile();
 
-    public static void main(String[] args) throws IOException {
+    private final TaskManager manager;
+    private final HttpServer httpServer;
+    private final ServerExecutor executor;
+    private final Router router;
+    // Версии менеджера начинаются заново после перезапуска, поэтому в ETag добавляется метка экземпляра сервера
+    private final String instanceTag = Long.toHexString(System.currentTimeMillis());
+    private final AtomicLong notModified = new AtomicLong();
+    private final ResponseCache cache;
+
+    public HttpTaskServer() throws IOException {
+        this(defaultManager(), PORT, ExecutorMode.FIXED, DEFAULT_THREADS);
+    }
+
+    /* Журнал с фоновой записью: изменение только ставит записи в очередь, а на диск их пишет поток записи
+       без блокировки ConcurrentTaskManager, поэтому чтения не ждут диска */
+    private static TaskManager defaultManager() {
+        return Managers.getConcurrent(Managers.getWriteBehindFile(DurabilityPolicy.INTERVAL));
+    }
+
+    /* Без исполнителя HttpServer выполняет все запросы в одном потоке-диспетчере, и одна долгая запись
+       в файл задерживает всех. Менеджер должен быть потокобезопасным (см. ConcurrentTaskManager). */
+    public HttpTaskServer(TaskManager manager, int port, ExecutorMode mode, int threads) throws IOException {
+        this(manager, port, mode, threads, DEFAULT_CACHE_BYTES);
+    }
 
-        HttpServer httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
+    // cacheBytes - размер кэша готовых ответов, 0 отключает кэш
+    public HttpTaskServer(TaskManager manager, int port, ExecutorMode mode, int threads, long cacheBytes)
+            throws IOException {
+        this.manager = manager;
+        this.cache = new ResponseCache(cacheBytes, true);
+        manager.addChangeListener(this::invalidate);
+        this.executor = new ServerExecutor(mode, threads);
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        this.router = buildRouter();
         httpServer.createContext("/tasks", new HttpTaskServerHandler());
-        httpServer.start();
+        httpServer.createContext("/metrics", this::metrics);
+        httpServer.setExecutor(executor);
+    }
 
-        System.out.println("HTTP-сервер запущен на " + PORT + " порту!");
+    public static void main(String[] args) throws IOException {
+        ExecutorMode mode = args.length > 0 ? ExecutorMode.valueOf(args[0]) : ExecutorMode.FIXED;
+        HttpTaskServer server = new HttpTaskServer(defaultManager(), PORT, mode, DEFAULT_THREADS);
+        fillSampleData(server.manager);
+        server.start();
 
         // потом удалить
         Scanner scanner = new Scanner(System.in);
         System.out.println("To stop the server enter \"stop\"");
         String stopSignal = scanner.next();
         if (stopSignal.equals("stop")) {
-            httpServer.stop(0);
+            server.stop();
             System.out.println("Server is stopped");
         }
     }
 
-    static class HttpTaskServerHandler implements HttpHandler {
+    public void start() {
+        httpServer.start();
+        System.out.println("HTTP-сервер запущен на " + getPort() + " порту! Режим: " + executor.getMode());
+    }
+
+    /* Сервер владеет менеджером: после остановки обработчиков менеджер закрывается, и изменения, еще не
+       записанные фоновой записью, сохраняются */
+    public void stop() {
+        httpServer.stop(0);
+        executor.close();
+        if (manager instanceof ConcurrentTaskManager) {
+            ((ConcurrentTaskManager) manager).close();
+        }
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public static Gson getGson() {
+        return gson;
+    }
+
+    public ServerExecutor getExecutor() {
+        return executor;
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    // Метрики исполнителя запросов: GET /metrics
+    private void metrics(HttpExchange httpExchange) throws IOException {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", executor.getMode());
+        metrics.put("queueDepth", executor.getQueueDepth());
+        metrics.put("activeThreads", executor.getActiveThreads());
+        metrics.put("completed", executor.getCompleted());
+        metrics.put("notModified", notModified.get());
+        metrics.put("cacheHits", cache.getHits());
+        metrics.put("cacheMisses", cache.getMisses());
+        metrics.put("cacheEvictions", cache.getEvictions());
+        metrics.put("cacheInvalidations", cache.getInvalidations());
+        metrics.put("cacheEntries", cache.size());
+        metrics.put("cacheBytes", cache.getBytes());
+        byte[] response = gson.toJson(metrics).getBytes(DEFAULT_CHARSET);
+        httpExchange.sendResponseHeaders(200, response.length);
+        try (OutputStream os = httpExchange.getResponseBody()) {
+            os.write(response);
+        }
+    }
+
+    // Маршруты собираются один раз; запрос, не совпавший ни с одним, получает 404 или 405
+    private Router buildRouter() {
+        return new Router()
+                .get("/tasks", (h, query) -> list(h, query, this::boardVersion, manager::getAllTasksAllTypes,
+                        manager::getAllTasksAllTypesPage, BOARD_TAGS))
+                .get("/tasks/history", this::getHistory)
+                .get("/tasks/task", this::getTask)
+                .get("/tasks/epic", this::getEpic)
+                .get("/tasks/subtask", this::getSubtask)
+                .get("/tasks/subtask/epic", this::getEpicSubtasks)
+                .post("/tasks/task", this::postTask)
+                .post("/tasks/epic", this::postEpic)
+                .post("/tasks/batch", this::postBatch)
+                .delete("/tasks/task", this::deleteTask)
+                .delete("/tasks/epic", this::deleteEpic)
+                .delete("/tasks/subtask", this::deleteSubtask);
+    }
+
+    class HttpTaskServerHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange httpExchange) throws IOException {
-            String method = httpExchange.getRequestMethod();
-            String path = httpExchange.getRequestURI().getPath();
-            String query = httpExchange.getRequestURI().getQuery();
-            int rCode = 404;
-            String response = "";
-
-            switch (method) {
-                case "GET":
-                    if (Pattern.matches("^/tasks/task$", path)) {
-                        rCode = 200;
-                        if (query != null && query.contains("id")) {
-                            String[] params = query.split("&");
-                            int id = getIdFromQuery(params);
-                            response = gson.toJson(manager.getTaskById(id));
-                            if (response.equals("null")) {
-                                response = "Задачи с таким id не существует";
-                                rCode = 404;
-                            }
-                            break;
-                        }
-                        response = gson.toJson(manager.getListAllTasks());
-                        break;
-                    }
-
-                    if (Pattern.matches("^/tasks/epic$", path)) {
-                        rCode = 200;
-                        if (query != null && query.contains("id")) {
-                            String[] params = query.split("&");
-                            int id = getIdFromQuery(params);
-                            response = gson.toJson(manager.getEpicById(id));
-                            if (response.equals("null")) {
-                                response = "Эпика с таким id не существует";
-                                rCode = 404;
-                            }
-                            break;
-                        }
-                        response = gson.toJson(manager.getListAllEpics());
-                        break;
-                    }
-
-                    if (Pattern.matches("^/tasks/subtask$", path)) {
-                        rCode = 200;
-                        if (query != null && query.contains("id")) {
-                            String[] params = query.split("&");
-                            int id = getIdFromQuery(params);
-                            response = gson.toJson(manager.getSubtaskById(id));
-                            if (response.equals("null")) {
-                                response = "Подзадачи с таким id не существует";
-                                rCode = 404;
-                            }
-                            break;
-                        }
-                        response = gson.toJson(manager.getListAllSubtasks());
-                        break;
-                    }
-
-                    if (Pattern.matches("^/tasks/subtask/epic$", path) && query != null && query.contains("id")) {
-                        String[] params = query.split("&");
-                        int id = getIdFromQuery(params);
-                        response = gson.toJson(manager.getEpicById(id).getEpicSubtasks());
-                        if (response.equals("null")) {
-                            response = "Эпика с таким id не существует";
-                            rCode = 404;
-                        }
-                        rCode = 200;
-                        break;
-                    }
-
-                    if (Pattern.matches("^/tasks$", path)) {
-                        response = gson.toJson(manager.getAllTasksAllTypes());
-                        rCode = 200;
-                        break;
-                    }
-
-                    if (Pattern.matches("^/tasks/history$", path)) {
-                        response = gson.toJson(manager.getHistory());
-                        rCode = 200;
-                        break;
-                    }
-
-                case "POST":
-                    // Добавление и обновление задач
-                    if (Pattern.matches("^/tasks/task$", path)) {
-                        rCode = 201;
-                        String body = new String(httpExchange.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
-
-                        Task task = gson.fromJson(body, Task.class);
-                        // если приходит в POST запросе параметр id, то необходимо обноление таски
-                        if (query != null && query.contains("id")) {
-                            String[] params = query.split("&");
-                            int id = getIdFromQuery(params);
-                            task.setId(id);
-                            manager.updateTask(task);
-                            response = gson.toJson(manager.getTaskById(id));
-                            break;
-                        }
-                        task.setStatus(TaskStatuses.NEW);
-                        Task.setCountTaskId(task.getCountTaskId() + 1);
-                        task.setId(task.getCountTaskId());
-                        manager.createTask(task);
-
-                        response = gson.toJson(task);
-                        break;
-                    }
-
-                    // Добавление и обновление эпиков
-                    if (Pattern.matches("^/tasks/epic$", path)) {
-                        rCode = 201;
-                        String body = new String(httpExchange.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
-
-                        Epic epic = gson.fromJson(body, Epic.class);
-                        // если приходит в POST запросе параметр id, то необходимо обновление эпика
-                        if (query != null && query.contains("id")) {
-                            String[] params = query.split("&");
-                            int id = getIdFromQuery(params);
-                            epic.setId(id);
-                            manager.updateEpic(epic);
-                            response = gson.toJson(manager.getTaskById(id));
-                            if (response.equals("null")) {
-                                response = "Задачи с таким id не существует";
-                                rCode = 404;
-                            }
-                            break;
-                        }
-                        epic.setStatus(TaskStatuses.NEW);
-                        Task.setCountTaskId(epic.getCountTaskId() + 1);
-                        epic.setId(epic.getCountTaskId());
-                        manager.createEpic(epic);
-
-                        response = gson.toJson(manager.getEpicById(epic.getId()));
-                        break;
-                    }
-                case "DELETE":
-                    //
-                    break;
-                default:
-                    //
+            Response response;
+            try {
+                response = router.route(httpExchange);
+            } catch (NonExistentTaskException e) {
+                response = Response.text(404, e.getMessage());
+            } catch (TaskTimeValidationException | JsonParseException | IllegalArgumentException e) {
+                response = Response.text(400, e.getMessage());
             }
+            send(httpExchange, response);
+        }
+    }
+
+    /* Большие коллекции сериализуются потоком прямо в тело ответа (chunked), без промежуточной строки и массива
+       байт размером со всю доску. Небольшие ответы отправляются целиком с точным Content-Length. */
+    private void send(HttpExchange httpExchange, Response response) throws IOException {
+        final Object body = response.getBody();
+        if (body instanceof ResponseCache.Entry) {
+            sendCached(httpExchange, response.getCode(), (ResponseCache.Entry) body);
+            return;
+        }
+        if (response.isJson() && body instanceof Collection && ((Collection<?>) body).size() > STREAMING_THRESHOLD
+                && !isGuarded(body)) {
+            httpExchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+            httpExchange.sendResponseHeaders(response.getCode(), 0);
+            // BufferedWriter обязателен: OutputStreamWriter выделяет новый массив на каждую записанную строку
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(httpExchange.getResponseBody(), DEFAULT_CHARSET), STREAM_BUFFER_SIZE))) {
+                gson.toJson(body, body.getClass(), writer);
+            }
+            return;
+        }
+
+        final byte[] bytes;
+        if (response.isJson()) {
+            httpExchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+            bytes = toJson(body);
+        } else {
+            httpExchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+            bytes = ((String) body).getBytes(DEFAULT_CHARSET);
+        }
+        httpExchange.sendResponseHeaders(response.getCode(), bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream os = httpExchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /* Эпики меняются на месте (статус, время, подзадачи), когда другой поток меняет их подзадачи, поэтому ответ
+       с эпиками сериализуется под блокировкой чтения ConcurrentTaskManager и не отдается потоком: иначе
+       параллельное изменение дало бы рваный JSON или ошибку обхода подзадач. Остальные задачи при изменении
+       заменяются новыми объектами, и их можно сериализовать без блокировки. */
+    private byte[] toJson(Object body) {
+        if (isGuarded(body)) {
+            return ((ConcurrentTaskManager) manager).read(m -> gson.toJson(body).getBytes(DEFAULT_CHARSET));
+        }
+        return gson.toJson(body).getBytes(DEFAULT_CHARSET);
+    }
 
-            httpExchange.sendResponseHeaders(rCode, 0);
-            try (OutputStream os = httpExchange.getResponseBody()) {
-                os.write(response.getBytes());
+    private boolean isGuarded(Object body) {
+        if (!(manager instanceof ConcurrentTaskManager)) {
+            return false;
+        }
+        if (body instanceof Collection) {
+            for (Object item : (Collection<?>) body) {
+                if (item instanceof Epic) {
+                    return true;
+                }
             }
+            return false;
+        }
+        return body instanceof Epic;
+    }
+
+    // Ответ из кэша: сжатая копия отдается, если клиент принимает gzip
+    private static void sendCached(HttpExchange httpExchange, int code, ResponseCache.Entry entry) throws IOException {
+        httpExchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        if (entry.getNextCursor() != null) {
+            httpExchange.getResponseHeaders().set("X-Next-Cursor", entry.getNextCursor());
+        }
+        byte[] bytes = entry.getBody();
+        final String acceptEncoding = httpExchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (entry.getGzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            httpExchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            bytes = entry.getGzipped();
+        }
+        httpExchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        httpExchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = httpExchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /* Ответ на GET через кэш. Ключ - путь и строка запроса, tags - от каких коллекций зависит ответ.
+       Очень большие списки не кэшируются и отдаются потоком, как раньше. */
+    private Response cached(HttpExchange h, String query, Supplier<Response> response, String... tags) {
+        final String key = query == null ? h.getRequestURI().getPath() : h.getRequestURI().getPath() + "?" + query;
+        ResponseCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            return Response.cached(entry);
         }
+        final long ticket = cache.ticket();
+        final Response fresh = response.get();
+        final Object body = fresh.getBody();
+        if (fresh.getCode() != 200 || !fresh.isJson()
+                || (body instanceof Collection && ((Collection<?>) body).size() > CACHE_MAX_ITEMS)) {
+            return fresh;
+        }
+        final byte[] bytes = toJson(body);
+        return Response.cached(cache.put(key, ticket, bytes, h.getResponseHeaders().getFirst("X-Next-Cursor"),
+                tags));
     }
 
-    private static int getIdFromQuery(String[] params) {
-        return Arrays.stream(params)
-                .filter(i -> i.matches("^id=\\d+"))
-                .map(i -> i.split("="))
-                .mapToInt(i -> Integer.parseInt(i[1]))
-                .findAny().getAsInt();
+    // Сообщение менеджера об изменении: удаляются только ответы, зависящие от изменившихся данных
+    private void invalidate(TaskTypes type, int epicId) {
+        switch (type) {
+            case TASK:
+                cache.invalidate(TASKS_TAG);
+                break;
+            case SUBTASK:
+                cache.invalidate(SUBTASKS_TAG);
+                // в списке эпиков есть их подзадачи, статус и время, поэтому он тоже устаревает
+            case EPIC:
+                cache.invalidate(EPICS_TAG);
+                cache.invalidate(epicId == 0 ? EPIC_VIEWS_TAG : EPIC_TAG_PREFIX + epicId);
+        }
+    }
+
+    /* Списки: без параметров - весь список (как раньше), с параметрами limit и/или cursor - одна страница
+       по возрастанию id. cursor - id последней задачи предыдущей страницы, он же приходит в заголовке
+       X-Next-Cursor, если страница заполнена целиком. */
+    private Response list(HttpExchange h, String query, LongSupplier version, Supplier<List<? extends Task>> all,
+                          PageSource pages, String... tags) {
+        return conditional(h, version.getAsLong(), () -> cached(h, query, () -> isPageQuery(query)
+                ? page(h, query, pages) : Response.json(200, all.get()), tags));
+    }
+
+    private Response page(HttpExchange h, String query, PageSource pages) {
+        int limit = Router.intParam(query, "limit");
+        limit = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        final int cursor = Math.max(0, Router.intParam(query, "cursor"));
+        final List<? extends Task> page = pages.page(cursor, limit);
+        if (page.size() == limit) {
+            h.getResponseHeaders().set("X-Next-Cursor", String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return Response.json(200, page);
+    }
+
+    private static boolean isPageQuery(String query) {
+        return Router.intParam(query, "limit") >= 0 || Router.intParam(query, "cursor") >= 0;
+    }
+
+    @FunctionalInterface
+    private interface PageSource {
+        List<? extends Task> page(int afterId, int limit);
+    }
+
+    // Получение задач: с параметром id - одна задача, без него - весь список или страница
+    // С параметром limit - только последние limit просмотров
+    private Response getHistory(HttpExchange h, String query) {
+        final int limit = Router.intParam(query, "limit");
+        return conditional(h, manager.getHistoryVersion(), () -> Response.json(200,
+                limit >= 0 ? manager.getLastViewed(limit) : manager.getHistory()));
+    }
+
+    private Response getTask(HttpExchange h, String query) {
+        if (query == null || isPageQuery(query)) {
+            return list(h, query, manager::getTasksVersion, manager::getListAllTasks, manager::getTasksPage,
+                    TASKS_TAG);
+        }
+        Task task = manager.getTaskById(requireId(query));
+        return task == null ? Response.text(404, "Задачи с таким id не существует") : Response.json(200, task);
+    }
+
+    private Response getEpic(HttpExchange h, String query) {
+        if (query == null || isPageQuery(query)) {
+            return list(h, query, manager::getEpicsVersion, manager::getListAllEpics, manager::getEpicsPage,
+                    EPICS_TAG);
+        }
+        Epic epic = manager.getEpicById(requireId(query));
+        return epic == null ? Response.text(404, "Эпика с таким id не существует") : Response.json(200, epic);
+    }
+
+    private Response getSubtask(HttpExchange h, String query) {
+        if (query == null || isPageQuery(query)) {
+            return list(h, query, manager::getSubtasksVersion, manager::getListAllSubtasks, manager::getSubtasksPage,
+                    SUBTASKS_TAG);
+        }
+        Subtask subtask = manager.getSubtaskById(requireId(query));
+        return subtask == null
+                ? Response.text(404, "Подзадачи с таким id не существует") : Response.json(200, subtask);
+    }
+
+    private Response getEpicSubtasks(HttpExchange h, String query) {
+        final int id = requireId(query);
+        final long version = manager.getEpicVersion(id); // версия читается до данных, см. conditional
+        Epic epic = manager.getEpicById(id);
+        return epic == null
+                ? Response.text(404, "Эпика с таким id не существует")
+                : conditional(h, version, () -> cached(h, query,
+                        () -> Response.json(200, manager.getListAllSubtasksByEpic(epic)),
+                        EPIC_VIEWS_TAG, EPIC_TAG_PREFIX + id));
+    }
+
+    // Версия всей доски: при любом изменении одна из версий получает новое наибольшее значение
+    private long boardVersion() {
+        return Math.max(manager.getTasksVersion(), Math.max(manager.getEpicsVersion(), manager.getSubtasksVersion()));
+    }
+
+    /* Условный запрос: ETag строится из версии данных, и если клиент прислал тот же ETag в If-None-Match, отвечаем
+       304 без сериализации. Версия берется до чтения данных: если данные успеют измениться, клиент получит
+       более новые данные со старым ETag и просто перезапросит их в следующий раз, но не наоборот. */
+    private Response conditional(HttpExchange h, long version, Supplier<Response> response) {
+        final String etag = "\"" + instanceTag + "-" + version + "\"";
+        h.getResponseHeaders().set("ETag", etag);
+        final String ifNoneMatch = h.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            notModified.incrementAndGet();
+            return Response.text(304, "");
+        }
+        return response.get();
+    }
+
+    /* Добавление и обновление задач: если в запросе есть параметр id, то задача обновляется (некорректный id - 400).
+       Другие параметры, как и раньше, не мешают созданию задачи. */
+    private Response postTask(HttpExchange h, String query) throws IOException {
+        Task task = gson.fromJson(readBody(h), Task.class);
+        if (Router.hasParam(query, "id")) {
+            int id = requireId(query);
+            task.setId(id);
+            manager.updateTask(task);
+            return Response.json(201, manager.getTaskById(id));
+        }
+        task.setStatus(TaskStatuses.NEW);
+        task.setId(manager.generateId());
+        manager.createTask(task);
+        return Response.json(201, task);
+    }
+
+    // Добавление и обновление эпиков
+    private Response postEpic(HttpExchange h, String query) throws IOException {
+        Epic epic = gson.fromJson(readBody(h), Epic.class);
+        if (Router.hasParam(query, "id")) {
+            int id = requireId(query);
+            epic.setId(id);
+            manager.updateEpic(epic);
+            Epic updated = manager.getEpicById(id);
+            return updated == null
+                    ? Response.text(404, "Эпика с таким id не существует") : Response.json(201, updated);
+        }
+        epic.setStatus(TaskStatuses.NEW);
+        epic.setId(manager.generateId());
+        manager.createEpic(epic);
+        return Response.json(201, manager.getEpicById(epic.getId()));
+    }
+
+    /* Пакет изменений (импорт спринта): проверяется и применяется одним вызовом менеджера, на диск записывается
+       один раз. При ошибке в любой задаче пакет не применяется целиком. */
+    private Response postBatch(HttpExchange h, String query) throws IOException {
+        BatchRequest batch = gson.fromJson(readBody(h), BatchRequest.class);
+        if (batch == null || batch.operation == null) {
+            throw new IllegalArgumentException("В пакете не указана операция: CREATE, UPDATE или REMOVE");
+        }
+        switch (batch.operation) {
+            case CREATE:
+                List<Task> created = newTasks(batch);
+                manager.createAll(created);
+                return Response.json(201, created);
+            case UPDATE:
+                List<Task> updated = new ArrayList<>();
+                addAll(updated, batch.epics, epic -> new Epic(epic.getId(), epic.getName(), epic.getDescription(),
+                        epic.getStatus()));
+                addAll(updated, batch.tasks, task -> task);
+                addAll(updated, batch.subtasks, subtask -> subtask);
+                manager.updateAll(updated);
+                return Response.text(200, "Обновлено задач: " + updated.size());
+            default:
+                final List<Integer> ids = batch.ids == null ? Collections.emptyList() : batch.ids;
+                manager.removeAll(ids);
+                return Response.text(200, "Удалено задач: " + ids.size());
+        }
+    }
+
+    // Новые задачи пакета с id от сервера; подзадачи, ссылающиеся на эпик из пакета, получают его новый id
+    private List<Task> newTasks(BatchRequest batch) {
+        List<Task> created = new ArrayList<>();
+        Map<Integer, Integer> epicIds = new HashMap<>();
+        addAll(created, batch.epics, epic -> {
+            Epic newEpic = new Epic(epic.getName(), epic.getDescription());
+            epicIds.put(epic.getId(), newEpic.getId());
+            return newEpic;
+        });
+        addAll(created, batch.tasks, task -> {
+            task.setStatus(TaskStatuses.NEW);
+            task.setId(manager.generateId());
+            return task;
+        });
+        addAll(created, batch.subtasks, subtask -> new Subtask(manager.generateId(), subtask.getName(),
+                subtask.getDescription(), TaskStatuses.NEW, epicIds.getOrDefault(subtask.getEpicId(),
+                subtask.getEpicId()), subtask.getStartTime(), subtask.getDuration()));
+        return created;
+    }
+
+    private static <T extends Task> void addAll(List<Task> target, List<T> source, Function<T, Task> mapper) {
+        if (source == null) {
+            return;
+        }
+        for (T task : source) {
+            if (task == null) {
+                throw new IllegalArgumentException("В пакете есть пустая задача");
+            }
+            target.add(mapper.apply(task));
+        }
+    }
+
+    // Удаление: с параметром id - одна задача, без него - все задачи этого типа
+    private Response deleteTask(HttpExchange h, String query) {
+        if (query == null) {
+            manager.deleteAllTasks();
+            return Response.text(200, "Все задачи удалены");
+        }
+        manager.removeTaskById(requireId(query));
+        return Response.text(200, "Задача удалена");
+    }
+
+    private Response deleteEpic(HttpExchange h, String query) {
+        if (query == null) {
+            manager.deleteAllEpics();
+            return Response.text(200, "Все эпики удалены");
+        }
+        manager.removeEpicById(requireId(query));
+        return Response.text(200, "Эпик удален");
+    }
+
+    private Response deleteSubtask(HttpExchange h, String query) {
+        if (query == null) {
+            manager.deleteAllSubtasks();
+            return Response.text(200, "Все подзадачи удалены");
+        }
+        manager.removeSubtaskById(requireId(query));
+        return Response.text(200, "Подзадача удалена");
+    }
+
+    private static String readBody(HttpExchange httpExchange) throws IOException {
+        return new String(httpExchange.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
+    }
+
+    // Если id в запросе нет или он некорректный, отвечаем 400
+    private static int requireId(String query) {
+        int id = Router.intParam(query, "id");
+        if (id < 0) {
+            throw new IllegalArgumentException("В запросе нет корректного параметра id");
+        }
+        return id;
     }
 
-    static {
+    // Тестовые данные для ручной проверки через Insomnia/Postman
+    private static void fillSampleData(TaskManager manager) {
         Task task1 = new Task("task1", "desc", "12.12.2323 12:00", 60);
         Task task2 = new Task("task2", "desc", "12.12.2323 13:00", 60);
         Epic epic1 = new Epic("epic1", "desc");
@@ -0,0 +1,27 @@
+package tasktracker.api;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/* Хранилище ключ-значение для KVTaskManager: один KVServer (KVTaskClient) или несколько серверов с распределением
+   ключей между ними (ShardedKVClient). Ошибки связи и ответы с ошибкой - ManagerSaveException. */
+public interface KVClient {
+
+    void put(String key, String json);
+
+    // null, если значения нет
+    String load(String key);
+
+    // Удаление отсутствующего ключа не считается ошибкой
+    void delete(String key);
+
+    // Ключи, начинающиеся с prefix, по алфавиту
+    List<String> keys(String prefix);
+
+    // Значение null удаляет ключ
+    void putAll(Map<String, String> values);
+
+    // Ключи, которых нет, в результат не попадают
+    Map<String, String> loadAll(Collection<String> keys);
+}
@@ -2,62 +2,272 @@ package tasktracker.api;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 /**
  * Постман: https://www.getpostman.com/collections/a83b61d9e1c81c10575c
+ *
+ * Значения хранятся как есть (байтами) в файлах-сегментах {@link KVStore}, в памяти - только индекс ключей:
+ * чтения идут параллельно и без блокировки, сохранения упорядочены, данные переживают перезапуск.
+ * Запросы выполняются пулом потоков, а не единственным потоком-диспетчером HttpServer.
+ * /save-batch и /load-batch переносят набор ключей одним запросом; значения в них - строки UTF-8.
  */
 public class KVServer {
 	public static final int PORT = 8078;
+	private static final File DEFAULT_STORAGE_DIR = new File("src/main/resources/kv-store");
+	private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 2;
 	private final String apiToken;
 	private final HttpServer server;
-	private final Map<String, String> data = new HashMap<>();
+	private final ServerExecutor executor;
+	private final KVStore store;
+	private final Gson gson = new Gson();
+
+	/* Заголовки и тело ответа HttpServer отправляет отдельными записями в сокет, и без TCP_NODELAY тело небольшого
+	   ответа ждет подтверждения заголовков (алгоритм Нейгла + отложенный ACK, ~40 мс на запрос). Настройка общая
+	   для всех HttpServer процесса и читается при создании первого из них; явно заданное значение не меняется. */
+	static {
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
 
 	public KVServer() throws IOException {
+		this(PORT, DEFAULT_STORAGE_DIR, DEFAULT_THREADS);
+	}
+
+	// port = 0 - любой свободный порт (см. getPort)
+	public KVServer(int port, File storageDir, int threads) throws IOException {
 		apiToken = generateApiToken();
-		server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+		store = new KVStore(storageDir);
+		executor = new ServerExecutor(ExecutorMode.FIXED, threads);
+		server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+		server.setExecutor(executor);
 		server.createContext("/register", this::register);
 		server.createContext("/save", this::save);
 		server.createContext("/load", this::load);
+		server.createContext("/delete", this::delete);
+		server.createContext("/keys", this::keys);
+		server.createContext("/save-batch", this::saveBatch);
+		server.createContext("/load-batch", this::loadBatch);
 	}
 
-	private void load(HttpExchange h) {
-		// TODO Добавьте получение значения по ключу
+	private void load(HttpExchange h) throws IOException {
+		try {
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				sendStatus(h, 403);
+				return;
+			}
+			if ("GET".equals(h.getRequestMethod())) {
+				String key = key(h, "/load/");
+				if (key.isEmpty()) {
+					System.out.println("Key для загрузки пустой. key указывается в пути: /load/{key}");
+					sendStatus(h, 400);
+					return;
+				}
+				byte[] value = store.get(key);
+				if (value == null) {
+					sendStatus(h, 404);
+					return;
+				}
+				sendBytes(h, value);
+			} else {
+				System.out.println("/load ждёт GET-запрос, а получил: " + h.getRequestMethod());
+				sendStatus(h, 405);
+			}
+		} finally {
+			h.close();
+		}
 	}
 
 	private void save(HttpExchange h) throws IOException {
 		try {
-			System.out.println("\n/save");
 			if (!hasAuth(h)) {
 				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
-				h.sendResponseHeaders(403, 0);
+				sendStatus(h, 403);
 				return;
 			}
 			if ("POST".equals(h.getRequestMethod())) {
-				String key = h.getRequestURI().getPath().substring("/save/".length());
+				String key = key(h, "/save/");
 				if (key.isEmpty()) {
 					System.out.println("Key для сохранения пустой. key указывается в пути: /save/{key}");
-					h.sendResponseHeaders(400, 0);
+					sendStatus(h, 400);
 					return;
 				}
-				String value = readText(h);
-				if (value.isEmpty()) {
+				byte[] value = h.getRequestBody().readAllBytes();
+				if (value.length == 0) {
 					System.out.println("Value для сохранения пустой. value указывается в теле запроса");
-					h.sendResponseHeaders(400, 0);
+					sendStatus(h, 400);
+					return;
+				}
+				try {
+					store.put(key, value);
+				} catch (UncheckedIOException e) {
+					System.out.println("Не удалось сохранить значение для ключа " + key + ": " + e.getMessage());
+					sendStatus(h, 500);
 					return;
 				}
-				data.put(key, value);
-				System.out.println("Значение для ключа " + key + " успешно обновлено!");
-				h.sendResponseHeaders(200, 0);
+				sendStatus(h, 200);
 			} else {
 				System.out.println("/save ждёт POST-запрос, а получил: " + h.getRequestMethod());
-				h.sendResponseHeaders(405, 0);
+				sendStatus(h, 405);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	private void delete(HttpExchange h) throws IOException {
+		try {
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				sendStatus(h, 403);
+				return;
+			}
+			if ("DELETE".equals(h.getRequestMethod())) {
+				String key = key(h, "/delete/");
+				if (key.isEmpty()) {
+					System.out.println("Key для удаления пустой. key указывается в пути: /delete/{key}");
+					sendStatus(h, 400);
+					return;
+				}
+				final boolean removed;
+				try {
+					removed = store.remove(key);
+				} catch (UncheckedIOException e) {
+					System.out.println("Не удалось удалить значение для ключа " + key + ": " + e.getMessage());
+					sendStatus(h, 500);
+					return;
+				}
+				sendStatus(h, removed ? 200 : 404);
+			} else {
+				System.out.println("/delete ждёт DELETE-запрос, а получил: " + h.getRequestMethod());
+				sendStatus(h, 405);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	/* Несколько сохранений одним запросом: тело - JSON-объект {"ключ": "значение", ...}, значение null удаляет ключ.
+	   Пакет дописывается в хранилище одной записью на диск и виден читателям по мере применения. */
+	private void saveBatch(HttpExchange h) throws IOException {
+		try {
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				sendStatus(h, 403);
+				return;
+			}
+			if ("POST".equals(h.getRequestMethod())) {
+				final Map<String, String> batch;
+				try {
+					batch = gson.fromJson(readText(h), new TypeToken<Map<String, String>>() {
+					}.getType());
+				} catch (JsonParseException e) {
+					System.out.println("Тело /save-batch должно быть JSON-объектом ключ-значение: " + e.getMessage());
+					sendStatus(h, 400);
+					return;
+				}
+				if (batch == null || batch.isEmpty()) {
+					System.out.println("Пакет для сохранения пустой");
+					sendStatus(h, 400);
+					return;
+				}
+				Map<String, byte[]> values = new LinkedHashMap<>(batch.size() * 2);
+				for (Map.Entry<String, String> entry : batch.entrySet()) {
+					if (entry.getKey().isEmpty() || entry.getValue() != null && entry.getValue().isEmpty()) {
+						System.out.println("В пакете пустой key или value, ключ: '" + entry.getKey() + "'");
+						sendStatus(h, 400);
+						return;
+					}
+					values.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().getBytes(UTF_8));
+				}
+				try {
+					store.putAll(values);
+				} catch (UncheckedIOException e) {
+					System.out.println("Не удалось сохранить пакет из " + values.size() + " значений: " + e.getMessage());
+					sendStatus(h, 500);
+					return;
+				}
+				sendStatus(h, 200);
+			} else {
+				System.out.println("/save-batch ждёт POST-запрос, а получил: " + h.getRequestMethod());
+				sendStatus(h, 405);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	// Тело - JSON-массив ключей, ответ - JSON-объект с найденными из них (отсутствующих ключей в ответе нет)
+	private void loadBatch(HttpExchange h) throws IOException {
+		try {
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				sendStatus(h, 403);
+				return;
+			}
+			if ("POST".equals(h.getRequestMethod())) {
+				final List<String> keys;
+				try {
+					keys = gson.fromJson(readText(h), new TypeToken<List<String>>() {
+					}.getType());
+				} catch (JsonParseException e) {
+					System.out.println("Тело /load-batch должно быть JSON-массивом ключей: " + e.getMessage());
+					sendStatus(h, 400);
+					return;
+				}
+				Map<String, String> values = new LinkedHashMap<>();
+				if (keys != null) {
+					for (String key : keys) {
+						byte[] value = key == null ? null : store.get(key);
+						if (value != null) {
+							values.put(key, new String(value, UTF_8));
+						}
+					}
+				}
+				sendText(h, gson.toJson(values));
+			} else {
+				System.out.println("/load-batch ждёт POST-запрос, а получил: " + h.getRequestMethod());
+				sendStatus(h, 405);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	// JSON-массив ключей, начинающихся с префикса из пути /keys/{prefix} (пустой префикс - все ключи), по алфавиту
+	private void keys(HttpExchange h) throws IOException {
+		try {
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				sendStatus(h, 403);
+				return;
+			}
+			if ("GET".equals(h.getRequestMethod())) {
+				String prefix = key(h, "/keys/");
+				List<String> keys = store.keys().stream()
+						.filter(key -> key.startsWith(prefix))
+						.sorted()
+						.collect(Collectors.toList());
+				sendText(h, gson.toJson(keys));
+			} else {
+				System.out.println("/keys ждёт GET-запрос, а получил: " + h.getRequestMethod());
+				sendStatus(h, 405);
 			}
 		} finally {
 			h.close();
@@ -66,12 +276,11 @@ public class KVServer {
 
 	private void register(HttpExchange h) throws IOException {
 		try {
-			System.out.println("\n/register");
 			if ("GET".equals(h.getRequestMethod())) {
 				sendText(h, apiToken);
 			} else {
 				System.out.println("/register ждёт GET-запрос, а получил " + h.getRequestMethod());
-				h.sendResponseHeaders(405, 0);
+				sendStatus(h, 405);
 			}
 		} finally {
 			h.close();
@@ -79,16 +288,37 @@ public class KVServer {
 	}
 
 	public void start() {
-		System.out.println("Запускаем сервер на порту " + PORT);
-		System.out.println("Открой в браузере http://localhost:" + PORT + "/");
+		System.out.println("Запускаем сервер на порту " + getPort());
+		System.out.println("Открой в браузере http://localhost:" + getPort() + "/");
 		System.out.println("API_TOKEN: " + apiToken);
 		server.start();
 	}
 
+	/* Сначала сервер перестает принимать запросы, затем пул дожидается обработчиков и только после этого прерывает
+	   оставшиеся; закрытые прерыванием каналы хранилища store.close() переносит (см. KVStore). */
+	public void stop() {
+		server.stop(0);
+		executor.close();
+		try {
+			store.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
 	private String generateApiToken() {
 		return "" + System.currentTimeMillis();
 	}
 
+	private static String key(HttpExchange h, String prefix) {
+		String path = h.getRequestURI().getPath();
+		return path.length() > prefix.length() ? path.substring(prefix.length()) : "";
+	}
+
 	protected boolean hasAuth(HttpExchange h) {
 		String rawQuery = h.getRequestURI().getRawQuery();
 		return rawQuery != null && (rawQuery.contains("API_TOKEN=" + apiToken) || rawQuery.contains("API_TOKEN=DEBUG"));
@@ -99,9 +329,22 @@ public class KVServer {
 	}
 
 	protected void sendText(HttpExchange h, String text) throws IOException {
-		byte[] resp = text.getBytes(UTF_8);
+		sendBytes(h, text.getBytes(UTF_8));
+	}
+
+	/* Ответ без тела. Непрочитанное тело запроса (даже пустое, как у DELETE с Content-Length: 0) HttpServer считает
+	   брошенным и закрывает соединение, а клиент успевает отправить по нему следующий запрос - поэтому тело
+	   дочитывается до ответа, и соединение остается в пуле клиента. */
+	protected void sendStatus(HttpExchange h, int code) throws IOException {
+		h.getRequestBody().readAllBytes();
+		h.sendResponseHeaders(code, -1);
+	}
+
+	protected void sendBytes(HttpExchange h, byte[] resp) throws IOException {
 		h.getResponseHeaders().add("Content-Type", "application/json");
 		h.sendResponseHeaders(200, resp.length);
-		h.getResponseBody().write(resp);
+		try (OutputStream os = h.getResponseBody()) {
+			os.write(resp);
+		}
 	}
 }
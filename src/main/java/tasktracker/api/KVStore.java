@@ -0,0 +1,589 @@
+package tasktracker.api;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/* Хранилище KVServer в файлах-сегментах каталога: в памяти держится только индекс ключ -> (сегмент, смещение, длина),
+   значения читаются с диска позиционным чтением FileChannel, поэтому данных может быть больше, чем памяти.
+   Запись в сегменте:
+     int длина ключа, int длина значения, UTF-8 байты ключа, байты значения, int CRC32 всех предыдущих байт записи.
+   Удаление записывается так же, с длиной значения -1 и без байт значения.
+   Записи дописываются в конец активного сегмента segment-<id>.log; когда он дорастает до segmentBytes, начинается
+   следующий. Когда файлы становятся вдвое больше живых данных, фоновое сжатие переписывает все закрытые сегменты
+   в один merged-<id>.log (только живые значения, без удалений), а затем удаляет их. merged-<id>.log заменяет все
+   файлы с номером не больше id, поэтому сжатие, прерванное на любом шаге, при старте доводится до конца или
+   отбрасывается. При старте файлы проигрываются по порядку; недописанная или поврежденная запись в конце сегмента
+   отбрасывается вместе со всем, что после нее. Записи попадают в файл до ответа клиенту, но без fsync на каждую:
+   они переживают перезапуск и падение процесса, но не отключение питания. fsync выполняется при сжатии и закрытии.
+   Прерывание потока во время чтения или записи закрывает FileChannel (ClosedByInterruptException): прерванная
+   операция завершается ошибкой, а канал открывается заново при следующем обращении к сегменту.
+   Неудачное сжатие учитывается (getCompactionFailures, getLastCompactionError) и повторяется не раньше чем через
+   COMPACTION_RETRY_NANOS. */
+public final class KVStore implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 16 << 20;
+    // Меньше этого размера файлы не сжимаются
+    static final long MIN_COMPACT_BYTES = 1 << 20;
+    private static final int HEADER_SIZE = 8;
+    private static final int CRC_SIZE = 4;
+    private static final int REMOVED = -1;
+    private static final String SEGMENT = "segment-";
+    private static final String MERGED = "merged-";
+    private static final String SUFFIX = ".log";
+    private static final String MERGE_TEMP = "merged.tmp";
+    private static final long COMPACTION_RETRY_NANOS = 1_000_000_000L;
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        volatile FileChannel channel; // заменяется, если канал закрыло прерывание потока
+        long size; // меняется только у активного сегмента и у результата сжатия до его публикации
+
+        Segment(long id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    // Где лежит значение: сегмент, смещение байт значения в нем и длины
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final int keyLength;
+
+        Location(Segment segment, long offset, int length, int keyLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.keyLength = keyLength;
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final List<Segment> sealed = new ArrayList<>(); // закрытые для записи сегменты, по возрастанию id
+    private final Object compactionLock = new Object();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kv-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Segment active;
+    private long bytes; // размер всех сегментов
+    private long liveBytes; // сколько занимали бы записи только текущих значений
+    private long writtenBytes; // сколько записано на диск всего, вместе со сжатиями
+    private long compactions;
+    private boolean compactionScheduled;
+    private long compactionRetryAt; // System.nanoTime(), раньше которого фоновое сжатие после ошибки не повторяется
+    private long compactionFailures;
+    private Exception lastCompactionError;
+    private boolean closed;
+
+    public KVStore(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public KVStore(File dir, long segmentBytes) throws IOException {
+        this.dir = dir.toPath();
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(this.dir);
+        Files.deleteIfExists(this.dir.resolve(MERGE_TEMP));
+        compactionRetryAt = System.nanoTime();
+        replay();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path path(String prefix, long id) {
+        return dir.resolve(String.format("%s%010d%s", prefix, id, SUFFIX));
+    }
+
+    private static long recordSize(int keyLength, int valueLength) {
+        return HEADER_SIZE + keyLength + Math.max(valueLength, 0) + CRC_SIZE;
+    }
+
+    // Последний merged-файл и сегменты после него, по порядку; остальное - остатки прерванного сжатия
+    private void replay() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> merged = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                final String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX) && name.startsWith(SEGMENT)) {
+                    segments.put(id(name, SEGMENT), file);
+                } else if (name.endsWith(SUFFIX) && name.startsWith(MERGED)) {
+                    merged.put(id(name, MERGED), file);
+                }
+            }
+        }
+        long lastId = 0;
+        if (!merged.isEmpty()) {
+            lastId = merged.lastKey();
+            for (Path file : merged.headMap(lastId).values()) {
+                Files.delete(file);
+            }
+            for (Path file : segments.headMap(lastId, true).values()) {
+                Files.delete(file);
+            }
+            segments.keySet().removeIf(id -> id <= merged.lastKey());
+            sealed.add(replay(merged.lastKey(), merged.lastEntry().getValue()));
+        }
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            sealed.add(replay(entry.getKey(), entry.getValue()));
+            lastId = entry.getKey();
+        }
+        // Дописывается последний сегмент, если он не merged и еще не заполнен
+        final Segment last = sealed.isEmpty() ? null : sealed.get(sealed.size() - 1);
+        if (last != null && !segments.isEmpty() && last.id == segments.lastKey() && last.size < segmentBytes) {
+            active = sealed.remove(sealed.size() - 1);
+        } else {
+            active = new Segment(lastId + 1, path(SEGMENT, lastId + 1), open(path(SEGMENT, lastId + 1)), 0);
+        }
+    }
+
+    private static long id(String name, String prefix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+    }
+
+    private Segment replay(long id, Path path) throws IOException {
+        final FileChannel channel = open(path);
+        final long size = channel.size();
+        final Segment segment = new Segment(id, path, channel, 0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position + recordSize(0, 0) <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            final int keyLength = header.getInt(0);
+            final int valueLength = header.getInt(4);
+            if (keyLength <= 0 || valueLength < REMOVED || position + recordSize(keyLength, valueLength) > size) {
+                break;
+            }
+            final int valueBytes = Math.max(valueLength, 0);
+            ByteBuffer body = ByteBuffer.allocate(keyLength + valueBytes + CRC_SIZE);
+            readFully(channel, body, position + HEADER_SIZE);
+            crc.reset();
+            crc.update(header.array());
+            crc.update(body.array(), 0, keyLength + valueBytes);
+            if ((int) crc.getValue() != body.getInt(keyLength + valueBytes)) {
+                break;
+            }
+            apply(new String(body.array(), 0, keyLength, UTF_8), keyLength, valueLength, segment, position);
+            position += recordSize(keyLength, valueLength);
+        }
+        if (position < size) {
+            System.out.println("Сегмент " + path + " обрезан до " + position + " байт: конец файла поврежден");
+            channel.truncate(position);
+        }
+        segment.size = position;
+        bytes += position;
+        return segment;
+    }
+
+    // null, если значения нет. Чтение без блокировки; может идти параллельно с записью и сжатием
+    public byte[] get(String key) {
+        while (true) {
+            final Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            try {
+                ByteBuffer value = ByteBuffer.allocate(location.length);
+                read(location.segment, value, location.offset);
+                return value.array();
+            } catch (ClosedByInterruptException e) {
+                throw new UncheckedIOException("Чтение из " + location.segment.path + " прервано", e);
+            } catch (ClosedChannelException e) {
+                // Сегмент удален сжатием: индекс к этому моменту уже указывает на новое место
+                if (index.get(key) == location) {
+                    throw new UncheckedIOException("Хранилище " + dir + " закрыто", e);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать значение из " + location.segment.path, e);
+            }
+        }
+    }
+
+    public boolean containsKey(String key) {
+        return index.containsKey(key);
+    }
+
+    // Живой вид на ключи индекса (только чтение)
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Записи выполняются по одной; чтения идут без блокировки
+    public synchronized void put(String key, byte[] value) {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final long position = append(record(keyBytes, value), recordSize(keyBytes.length, value.length));
+        apply(key, keyBytes.length, value.length, active, position);
+        afterWrite();
+    }
+
+    // Удаляет ключ; возвращает false, если его не было (тогда ничего не пишется)
+    public synchronized boolean remove(String key) {
+        if (!index.containsKey(key)) {
+            return false;
+        }
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final long position = append(record(keyBytes, null), recordSize(keyBytes.length, REMOVED));
+        apply(key, keyBytes.length, REMOVED, active, position);
+        afterWrite();
+        return true;
+    }
+
+    /* Пакет сохранений и удалений (значение null) дописывается одним вызовом write в один сегмент.
+       Каждая запись пакета проверяется CRC отдельно, поэтому после падения во время записи пакета
+       восстанавливается его начало - как если бы запросы пришли по одному. */
+    public synchronized void putAll(Map<String, byte[]> values) {
+        List<ByteBuffer> records = new ArrayList<>(values.size() * 4);
+        List<String> keys = new ArrayList<>(values.size());
+        List<byte[]> keyBytes = new ArrayList<>(values.size());
+        long size = 0;
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            if (entry.getValue() != null || index.containsKey(entry.getKey())) {
+                final byte[] bytes = entry.getKey().getBytes(UTF_8);
+                keys.add(entry.getKey());
+                keyBytes.add(bytes);
+                Collections.addAll(records, record(bytes, entry.getValue()));
+                size += recordSize(bytes.length, length(entry.getValue()));
+            }
+        }
+        long position = append(records.toArray(new ByteBuffer[0]), size);
+        for (int i = 0; i < keys.size(); i++) {
+            final int valueLength = length(values.get(keys.get(i)));
+            apply(keys.get(i), keyBytes.get(i).length, valueLength, active, position);
+            position += recordSize(keyBytes.get(i).length, valueLength);
+        }
+        afterWrite();
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? REMOVED : value.length;
+    }
+
+    /* Дописывает записи в конец активного сегмента; возвращает позицию первой из них. Недописанный из-за ошибки
+       хвост файла перезаписывается следующей записью, так как позиция берется из active.size. */
+    private long append(ByteBuffer[] records, long size) {
+        final long position = active.size;
+        while (true) {
+            final FileChannel channel = active.channel;
+            try {
+                channel.position(position);
+                write(channel, records, size);
+                break;
+            } catch (ClosedByInterruptException e) {
+                reopenQuietly(active, channel); // без I/O: у прерванного потока новый канал тоже закрылся бы
+                throw new UncheckedIOException("Запись в сегмент " + active.path + " прервана", e);
+            } catch (ClosedChannelException e) {
+                // канал закрыло прерывание чужого чтения: открываем заново и пишем записи с начала
+                if (!reopenQuietly(active, channel)) {
+                    throw new UncheckedIOException("Хранилище " + dir + " закрыто", e);
+                }
+                for (ByteBuffer record : records) {
+                    record.rewind();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось дописать сегмент " + active.path, e);
+            }
+        }
+        active.size += size;
+        bytes += size;
+        writtenBytes += size;
+        return position;
+    }
+
+    // Обновляет индекс по записи, начинающейся в position
+    private void apply(String key, int keyLength, int valueLength, Segment segment, long position) {
+        final Location previous;
+        if (valueLength == REMOVED) {
+            previous = index.remove(key);
+        } else {
+            previous = index.put(key, new Location(segment, position + HEADER_SIZE + keyLength, valueLength,
+                    keyLength));
+            liveBytes += recordSize(keyLength, valueLength);
+        }
+        if (previous != null) {
+            liveBytes -= recordSize(previous.keyLength, previous.length);
+        }
+    }
+
+    private void afterWrite() {
+        if (active.size >= segmentBytes) {
+            roll();
+        }
+        if (!compactionScheduled && !sealed.isEmpty() && bytes > Math.max(MIN_COMPACT_BYTES, 2 * liveBytes)
+                && System.nanoTime() - compactionRetryAt >= 0) {
+            compactionScheduled = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (UncheckedIOException e) {
+                    // ошибка уже учтена в compact(), сжатие повторится после следующих записей
+                    System.out.println("Сжатие хранилища " + dir + " не удалось: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // Закрывает активный сегмент для записи и начинает следующий; канал закрытого остается открытым для чтения
+    private void roll() {
+        final long id = active.id + 1;
+        try {
+            sealed.add(active);
+            active = new Segment(id, path(SEGMENT, id), open(path(SEGMENT, id)), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент " + path(SEGMENT, id), e);
+        }
+    }
+
+    /* Переписывает все закрытые сегменты (и текущий активный, если в нем что-то есть) в один merged-файл,
+       перенося только значения, на которые указывает индекс. Записи и чтения в это время продолжаются: новые
+       значения идут в следующий сегмент, а место в индексе меняется, только если ключ не перезаписали. */
+    public void compact() {
+        synchronized (compactionLock) {
+            final List<Segment> merging;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (active.size > 0) {
+                    roll();
+                }
+                merging = new ArrayList<>(sealed);
+                // Единственный merged-файл уже сжат: перезаписанные после сжатия значения лежат в других сегментах
+                if (merging.isEmpty() || merging.size() == 1 && !merging.get(0).path.getFileName().toString()
+                        .startsWith(SEGMENT)) {
+                    compactionScheduled = false;
+                    return;
+                }
+            }
+            final long id = merging.get(merging.size() - 1).id;
+            final Set<Segment> old = Collections.newSetFromMap(new IdentityHashMap<>());
+            old.addAll(merging);
+            final Path temp = dir.resolve(MERGE_TEMP);
+            Segment output = null;
+            final List<String> keys = new ArrayList<>();
+            final List<Location> from = new ArrayList<>();
+            final List<Location> to = new ArrayList<>();
+            try {
+                output = new Segment(id, path(MERGED, id), FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 0);
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    final Location location = entry.getValue();
+                    if (!old.contains(location.segment)) {
+                        continue;
+                    }
+                    ByteBuffer value = ByteBuffer.allocate(location.length);
+                    read(location.segment, value, location.offset);
+                    final byte[] keyBytes = entry.getKey().getBytes(UTF_8);
+                    final long size = recordSize(keyBytes.length, location.length);
+                    write(output.channel, record(keyBytes, value.array()), size);
+                    keys.add(entry.getKey());
+                    from.add(location);
+                    to.add(new Location(output, output.size + HEADER_SIZE + keyBytes.length, location.length,
+                            keyBytes.length));
+                    output.size += size;
+                }
+                output.channel.force(true);
+                Files.move(temp, output.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (output != null) {
+                    try {
+                        output.channel.close();
+                    } catch (IOException closeError) {
+                        e.addSuppressed(closeError);
+                    }
+                }
+                synchronized (this) {
+                    compactionScheduled = false;
+                    compactionRetryAt = System.nanoTime() + COMPACTION_RETRY_NANOS;
+                    compactionFailures++;
+                    lastCompactionError = e;
+                }
+                throw new UncheckedIOException("Не удалось сжать хранилище " + dir, e);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                index.replace(keys.get(i), from.get(i), to.get(i));
+            }
+            long removed = 0;
+            for (Segment segment : merging) {
+                removed += segment.size;
+            }
+            synchronized (this) {
+                sealed.removeAll(merging);
+                sealed.add(0, output);
+                bytes += output.size - removed;
+                writtenBytes += output.size;
+                compactions++;
+                compactionScheduled = false;
+            }
+            for (Segment segment : merging) {
+                try {
+                    segment.channel.close();
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException e) {
+                    System.out.println("Не удалось удалить сегмент " + segment.path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Буферы одной записи без копирования значения; value = null - запись об удалении
+    private static ByteBuffer[] record(byte[] keyBytes, byte[] value) {
+        final byte[] valueBytes = value == null ? new byte[0] : value;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(keyBytes.length).putInt(length(value));
+        CRC32 crc = new CRC32();
+        crc.update(header.array());
+        crc.update(keyBytes);
+        crc.update(valueBytes);
+        return new ByteBuffer[]{header.flip(), ByteBuffer.wrap(keyBytes), ByteBuffer.wrap(valueBytes),
+                ByteBuffer.allocate(CRC_SIZE).putInt(0, (int) crc.getValue())};
+    }
+
+    // Записи одним вызовом write (gathering write), пока не запишется size байт
+    private static void write(FileChannel out, ByteBuffer[] records, long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            remaining -= out.write(records);
+        }
+    }
+
+    /* Читает из сегмента; канал, закрытый прерыванием другого потока, открывается заново. ClosedChannelException -
+       хранилище закрыто или сегмент удален сжатием. */
+    private void read(Segment segment, ByteBuffer buffer, long position) throws IOException {
+        while (true) {
+            final FileChannel channel = segment.channel;
+            try {
+                readFully(channel, buffer, position);
+                return;
+            } catch (ClosedByInterruptException e) {
+                throw e;
+            } catch (ClosedChannelException e) {
+                if (!reopen(segment, channel)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /* Открывает канал сегмента заново, если он все еще failed и закрыт. false - хранилище закрыто или сегмента уже
+       нет (удален сжатием), открывать нечего. */
+    private synchronized boolean reopen(Segment segment, FileChannel failed) throws IOException {
+        if (closed || segment != active && !sealed.contains(segment)) {
+            return false;
+        }
+        if (segment.channel == failed && !failed.isOpen()) {
+            segment.channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return true;
+    }
+
+    private boolean reopenQuietly(Segment segment, FileChannel failed) {
+        try {
+            return reopen(segment, failed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть сегмент " + segment.path, e);
+        }
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Неожиданный конец сегмента в " + dir);
+            }
+        }
+    }
+
+    public synchronized long getDiskBytes() {
+        return bytes;
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    // Сколько сжатий не удалось и последняя ошибка (null, если ошибок не было)
+    public synchronized long getCompactionFailures() {
+        return compactionFailures;
+    }
+
+    public synchronized Exception getLastCompactionError() {
+        return lastCompactionError;
+    }
+
+    public synchronized int getSegmentCount() {
+        return sealed.size() + 1;
+    }
+
+    /* Дожидается идущего сжатия (запланированное отменяется), затем закрывает файлы. Канал, закрытый прерыванием
+       обработчика, ошибкой не считается: записанные через него данные уже в файле, fsync идет через новый канал. */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (compactionLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    active.channel.force(true);
+                } catch (ClosedChannelException e) {
+                    try (FileChannel channel = FileChannel.open(active.path, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                }
+                for (Segment segment : sealed) {
+                    segment.channel.close();
+                }
+                active.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package tasktracker.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import tasktracker.exceptions.ManagerSaveException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/* Клиент KVServer: при создании получает API_TOKEN через /register, дальше сохраняет, загружает и удаляет
+   значения по ключам. Ошибки связи и ответы с ошибкой превращаются в ManagerSaveException.
+   Все клиенты процесса работают через один HttpClient, который держит открытые соединения с сервером и
+   использует их повторно. Асинхронные запросы (*Async, putAll, loadAll) идут параллельно по нескольким
+   соединениям, но не больше MAX_IN_FLIGHT одновременно на клиента. Наборы ключей передаются пакетами
+   через /save-batch и /load-batch, по BATCH_SIZE ключей в запросе. */
+public class KVTaskClient implements KVClient {
+
+    // Сколько запросов клиент держит в полете одновременно (по соединению на запрос)
+    static final int MAX_IN_FLIGHT = 16;
+    // Сколько ключей передается одним пакетным запросом
+    static final int BATCH_SIZE = 1_000;
+
+    private static final HttpClient HTTP = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    // null в пакете сохранения означает удаление, поэтому null-значения сериализуются
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final String url;
+    private final String apiToken;
+
+    public KVTaskClient(String url) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(this.url + "/register")).GET()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new ManagerSaveException("KVServer не выдал API_TOKEN: ответ " + response.statusCode());
+        }
+        this.apiToken = response.body();
+    }
+
+    @Override
+    public void put(String key, String json) {
+        HttpResponse<Void> response = send(putRequest(key, json), HttpResponse.BodyHandlers.discarding());
+        check(response.statusCode(), "сохранить", key);
+    }
+
+    public CompletableFuture<Void> putAsync(String key, String json) {
+        return sendAsync(putRequest(key, json), HttpResponse.BodyHandlers.discarding(), response -> {
+            check(response.statusCode(), "сохранить", key);
+            return null;
+        });
+    }
+
+    // null, если значения нет
+    @Override
+    public String load(String key) {
+        HttpResponse<String> response = send(loadRequest(key), HttpResponse.BodyHandlers.ofString(UTF_8));
+        return loaded(response, key);
+    }
+
+    public CompletableFuture<String> loadAsync(String key) {
+        return sendAsync(loadRequest(key), HttpResponse.BodyHandlers.ofString(UTF_8),
+                response -> loaded(response, key));
+    }
+
+    // Удаление отсутствующего ключа не считается ошибкой
+    @Override
+    public void delete(String key) {
+        HttpResponse<Void> response = send(HttpRequest.newBuilder(uri("/delete/", key)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404) {
+            check(response.statusCode(), "удалить", key);
+        }
+    }
+
+    @Override
+    public List<String> keys(String prefix) {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/keys/", prefix)).GET().build(),
+                HttpResponse.BodyHandlers.ofString(UTF_8));
+        check(response.statusCode(), "получить ключи", prefix);
+        return gson.fromJson(response.body(), new TypeToken<List<String>>() {
+        }.getType());
+    }
+
+    /* Сохраняет значения пакетами; значение null удаляет ключ. Пакет применяется сервером одной записью журнала,
+       но набор из нескольких пакетов не атомарен. Единственный пакет отправляется синхронно, без передачи
+       ответа в поток HttpClient. */
+    @Override
+    public void putAll(Map<String, String> values) {
+        List<Map<String, String>> batches = split(values);
+        if (batches.size() == 1) {
+            savedBatch(send(batchRequest("/save-batch", batches.get(0)), HttpResponse.BodyHandlers.discarding()),
+                    batches.get(0).size());
+        } else {
+            join(saveBatches(batches));
+        }
+    }
+
+    public CompletableFuture<Void> putAllAsync(Map<String, String> values) {
+        return saveBatches(split(values));
+    }
+
+    private CompletableFuture<Void> saveBatches(List<Map<String, String>> batches) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        for (Map<String, String> batch : batches) {
+            futures.add(sendAsync(batchRequest("/save-batch", batch), HttpResponse.BodyHandlers.discarding(),
+                    response -> savedBatch(response, batch.size())));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static List<Map<String, String>> split(Map<String, String> values) {
+        List<Map<String, String>> batches = new ArrayList<>();
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    // Загружает значения пакетами; ключи, которых на сервере нет, в результат не попадают
+    @Override
+    public Map<String, String> loadAll(Collection<String> keys) {
+        List<List<String>> batches = split(keys);
+        if (batches.size() <= 1) {
+            return batches.isEmpty() ? new HashMap<>() : loadedBatch(send(batchRequest("/load-batch",
+                    batches.get(0)), HttpResponse.BodyHandlers.ofString(UTF_8)), batches.get(0).size());
+        }
+        return join(loadBatches(batches, keys.size()));
+    }
+
+    public CompletableFuture<Map<String, String>> loadAllAsync(Collection<String> keys) {
+        return loadBatches(split(keys), keys.size());
+    }
+
+    private CompletableFuture<Map<String, String>> loadBatches(List<List<String>> batches, int size) {
+        List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>(batches.size());
+        for (List<String> batch : batches) {
+            futures.add(sendAsync(batchRequest("/load-batch", batch), HttpResponse.BodyHandlers.ofString(UTF_8),
+                    response -> loadedBatch(response, batch.size())));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, String> values = new HashMap<>(size * 2);
+            for (CompletableFuture<Map<String, String>> future : futures) {
+                values.putAll(future.join());
+            }
+            return values;
+        });
+    }
+
+    private static List<List<String>> split(Collection<String> keys) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private HttpRequest batchRequest(String path, Object body) {
+        return HttpRequest.newBuilder(uri(path, ""))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body), UTF_8)).build();
+    }
+
+    private static Void savedBatch(HttpResponse<Void> response, int size) {
+        check(response.statusCode(), "сохранить", "пакет из " + size + " значений");
+        return null;
+    }
+
+    private Map<String, String> loadedBatch(HttpResponse<String> response, int size) {
+        check(response.statusCode(), "загрузить", "пакет из " + size + " ключей");
+        return gson.fromJson(response.body(), new TypeToken<Map<String, String>>() {
+        }.getType());
+    }
+
+    private HttpRequest putRequest(String key, String json) {
+        return HttpRequest.newBuilder(uri("/save/", key)).POST(HttpRequest.BodyPublishers.ofString(json, UTF_8))
+                .build();
+    }
+
+    private HttpRequest loadRequest(String key) {
+        return HttpRequest.newBuilder(uri("/load/", key)).GET().build();
+    }
+
+    private static String loaded(HttpResponse<String> response, String key) {
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        check(response.statusCode(), "загрузить", key);
+        return response.body();
+    }
+
+    private URI uri(String path, String key) {
+        // "/" оставляется как есть: ключи вида task/1 читаются сервером из пути целиком
+        final String encoded = URLEncoder.encode(key, UTF_8).replace("+", "%20").replace("%2F", "/");
+        return URI.create(url + path + encoded + "?API_TOKEN=" + apiToken);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return HTTP.send(request, handler);
+        } catch (IOException e) {
+            throw new ManagerSaveException("KVServer недоступен: " + request.uri(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Запрос к KVServer прерван", e);
+        }
+    }
+
+    // Ждет свободного места среди MAX_IN_FLIGHT запросов, ответ обрабатывается в потоке HttpClient
+    private <T, R> CompletableFuture<R> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                  Function<HttpResponse<T>, R> result) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("Запрос к KVServer прерван", e);
+        }
+        final CompletableFuture<HttpResponse<T>> future;
+        try {
+            future = HTTP.sendAsync(request, handler);
+        } catch (RuntimeException e) {
+            inFlight.release(); // запрос не ушел, место освобождаем сразу
+            throw new ManagerSaveException("Не удалось отправить запрос к KVServer: " + request.uri(), e);
+        }
+        return future
+                .whenComplete((response, error) -> inFlight.release())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new ManagerSaveException("KVServer недоступен: " + request.uri(), unwrap(error));
+                    }
+                    return result.apply(response);
+                });
+    }
+
+    // Дожидается запроса (или нескольких, объединенных allOf); ошибка пробрасывается как ManagerSaveException
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            final Throwable cause = unwrap(e);
+            if (cause instanceof ManagerSaveException) {
+                throw (ManagerSaveException) cause;
+            }
+            throw new ManagerSaveException("Запрос к KVServer не выполнен", cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void check(int status, String action, String key) {
+        if (status != 200) {
+            throw new ManagerSaveException("Не удалось " + action + " '" + key + "' в KVServer: ответ " + status);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package tasktracker.api;
 
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import tasktracker.tasks.Task;
 
@@ -12,12 +13,20 @@ public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
 
     @Override
     public void write(JsonWriter jsonWriter, LocalDateTime localDateTime) throws IOException {
+        // у задач без времени и пустых эпиков startTime равен null
+        if (localDateTime == null) {
+            jsonWriter.nullValue();
+            return;
+        }
         jsonWriter.value(localDateTime.format(Task.getFormatter()));
-
     }
 
     @Override
     public LocalDateTime read(final JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
         return LocalDateTime.parse(jsonReader.nextString(), Task.getFormatter());
     }
 }
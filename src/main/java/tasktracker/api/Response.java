@@ -0,0 +1,40 @@
+package tasktracker.api;
+
+// Ответ обработчика: код и тело - объект для JSON или готовый текст (сообщения об ошибках)
+public final class Response {
+
+    private final int code;
+    private final Object body;
+    private final boolean json;
+
+    private Response(int code, Object body, boolean json) {
+        this.code = code;
+        this.body = body;
+        this.json = json;
+    }
+
+    public static Response json(int code, Object body) {
+        return new Response(code, body, true);
+    }
+
+    public static Response text(int code, String body) {
+        return new Response(code, body, false);
+    }
+
+    // Готовое тело из кэша ответов: повторно не сериализуется
+    public static Response cached(ResponseCache.Entry entry) {
+        return new Response(200, entry, true);
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    public boolean isJson() {
+        return json;
+    }
+}
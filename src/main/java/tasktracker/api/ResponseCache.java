@@ -0,0 +1,194 @@
+package tasktracker.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/* Кэш готовых (сериализованных и, если тело достаточно большое, сжатых gzip) ответов на GET-запросы.
+   Ограничен суммарным размером в байтах, при переполнении вытесняется давно не читанный ответ (LRU).
+   Каждый ответ помечен тегами - от каких данных он зависит; при изменении менеджер сообщает, что изменилось,
+   и удаляются только ответы с соответствующим тегом. */
+public final class ResponseCache {
+
+    // Тела меньше этого размера не сжимаются: выигрыш меньше заголовков gzip
+    static final int GZIP_THRESHOLD = 1024;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final boolean gzip;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+    private long bytes;
+    private long generation; // растет при каждой инвалидации, см. ticket()
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    // maxBytes = 0 отключает кэш; один ответ занимает не больше четверти кэша
+    public ResponseCache(long maxBytes, boolean gzip) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+        this.gzip = gzip;
+    }
+
+    // Готовый ответ: тело, его сжатая копия (или null) и заголовок X-Next-Cursor для страниц (или null)
+    public static final class Entry {
+        private final byte[] body;
+        private final byte[] gzipped;
+        private final String nextCursor;
+        private final String[] tags;
+
+        private Entry(byte[] body, byte[] gzipped, String nextCursor, String[] tags) {
+            this.body = body;
+            this.gzipped = gzipped;
+            this.nextCursor = nextCursor;
+            this.tags = tags;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        private long size() {
+            return body.length + (gzipped == null ? 0 : gzipped.length);
+        }
+    }
+
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /* Номер поколения берется до чтения данных из менеджера. Если между ним и put() прошла инвалидация,
+       ответ мог быть построен по уже устаревшим данным, и put() его не сохранит. */
+    public synchronized long ticket() {
+        return generation;
+    }
+
+    // Возвращает готовый ответ; сохраняет его, только если данные не менялись с момента ticket и он помещается
+    public Entry put(String key, long ticket, byte[] body, String nextCursor, String... tags) {
+        if (body.length > maxEntryBytes) {
+            return new Entry(body, null, nextCursor, tags);
+        }
+        // Сжатие выполняется вне блокировки кэша
+        Entry entry = new Entry(body, gzip && body.length >= GZIP_THRESHOLD ? gzip(body) : null, nextCursor, tags);
+        synchronized (this) {
+            if (ticket != generation) {
+                return entry;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.size();
+            }
+            bytes += entry.size();
+            for (String tag : tags) {
+                keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+            }
+            evict();
+        }
+        return entry;
+    }
+
+    // Удаляет все ответы, зависящие от тега
+    public synchronized void invalidate(String tag) {
+        generation++;
+        Set<String> keys = keysByTag.remove(tag);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                bytes -= entry.size();
+                invalidations++;
+                unlink(key, entry, tag);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        keysByTag.clear();
+        bytes = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.getValue().size();
+            evictions++;
+            unlink(eldest.getKey(), eldest.getValue(), null);
+        }
+    }
+
+    // Убирает ключ из индексов остальных тегов ответа
+    private void unlink(String key, Entry entry, String skipTag) {
+        for (String tag : entry.tags) {
+            if (tag.equals(skipTag)) {
+                continue;
+            }
+            Set<String> keys = keysByTag.get(tag);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTag.remove(tag);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,11 @@
+package tasktracker.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+// Обработчик одного маршрута; query - строка запроса без разбора (может быть null)
+@FunctionalInterface
+public interface RouteHandler {
+    Response handle(HttpExchange exchange, String query) throws IOException;
+}
@@ -0,0 +1,103 @@
+package tasktracker.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Таблица маршрутов, собирается один раз при старте сервера. Поиск - два обращения к HashMap (путь, затем метод)
+   без регулярных выражений и без выделения памяти на запрос. */
+public final class Router {
+
+    private final Map<String, Map<String, RouteHandler>> routes = new HashMap<>();
+
+    public Router add(String method, String path, RouteHandler handler) {
+        routes.computeIfAbsent(path, p -> new HashMap<>(4)).put(method, handler);
+        return this;
+    }
+
+    public Router get(String path, RouteHandler handler) {
+        return add("GET", path, handler);
+    }
+
+    public Router post(String path, RouteHandler handler) {
+        return add("POST", path, handler);
+    }
+
+    public Router delete(String path, RouteHandler handler) {
+        return add("DELETE", path, handler);
+    }
+
+    // Возвращает обработчик или null, если маршрута нет
+    public RouteHandler find(String method, String path) {
+        Map<String, RouteHandler> methods = routes.get(path);
+        return methods == null ? null : methods.get(method);
+    }
+
+    public Response route(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final Map<String, RouteHandler> methods = routes.get(path);
+        if (methods == null) {
+            return Response.text(404, "Эндпоинт " + path + " не найден");
+        }
+        final RouteHandler handler = methods.get(exchange.getRequestMethod());
+        if (handler == null) {
+            exchange.getResponseHeaders().set("Allow", String.join(", ", methods.keySet()));
+            return Response.text(405, "Метод " + exchange.getRequestMethod() + " не поддерживается для " + path);
+        }
+        return handler.handle(exchange, exchange.getRequestURI().getRawQuery());
+    }
+
+    /* Значение целочисленного параметра запроса без регулярных выражений и промежуточных строк.
+       Возвращает -1, если параметра нет или это не неотрицательное число. */
+    public static int intParam(String query, String name) {
+        final int from = valueStart(query, name);
+        if (from < 0) {
+            return -1;
+        }
+        final int end = query.indexOf('&', from);
+        return parseNonNegative(query, from, end < 0 ? query.length() : end);
+    }
+
+    // Есть ли в запросе параметр name, с любым значением
+    public static boolean hasParam(String query, String name) {
+        return valueStart(query, name) >= 0;
+    }
+
+    // Начало значения параметра name или -1, если такого параметра нет
+    private static int valueStart(String query, String name) {
+        if (query == null) {
+            return -1;
+        }
+        final int length = query.length();
+        int start = 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            final int eq = start + name.length();
+            if (eq < end && query.charAt(eq) == '=' && query.startsWith(name, start)) {
+                return eq + 1;
+            }
+            start = end + 1;
+        }
+        return -1;
+    }
+
+    private static int parseNonNegative(String s, int from, int to) {
+        if (from >= to || to - from > 9) { // больше 9 цифр может не поместиться в int
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package tasktracker.api;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Исполнитель запросов HttpTaskServer и KVServer с метриками: сколько запросов ждут потока (глубина очереди),
+   сколько выполняются прямо сейчас и сколько выполнено всего. */
+public final class ServerExecutor implements Executor, AutoCloseable {
+
+    private final ExecutorService executor;
+    private final ExecutorMode mode;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    public ServerExecutor(ExecutorMode mode, int threads) {
+        ExecutorService virtual = mode == ExecutorMode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = ExecutorMode.VIRTUAL;
+        } else if (mode == ExecutorMode.FIXED) {
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.mode = ExecutorMode.FIXED;
+        } else {
+            this.executor = Executors.newWorkStealingPool(threads);
+            this.mode = ExecutorMode.WORK_STEALING;
+        }
+    }
+
+    /* Виртуальные потоки появились в Java 21, а проект собирается под Java 11, поэтому фабрика ищется
+       через reflection. Если ее нет, возвращается null и используется WORK_STEALING. */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Виртуальные потоки недоступны в этой версии Java, используется WORK_STEALING");
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet(); // запрос не принят (исполнитель остановлен) и в очереди не числится
+            throw e;
+        }
+    }
+
+    // Фактический режим (VIRTUAL может замениться на WORK_STEALING)
+    public ExecutorMode getMode() {
+        return mode;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveThreads() {
+        return active.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                queued.addAndGet(-executor.shutdownNow().size()); // запросы из очереди уже не выполнятся
+            }
+        } catch (InterruptedException e) {
+            queued.addAndGet(-executor.shutdownNow().size());
+            Thread.currentThread().interrupt();
+        }
+    }
+}
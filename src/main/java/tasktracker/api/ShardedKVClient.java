@@ -0,0 +1,265 @@
+package tasktracker.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Клиент нескольких KVServer: ключ хранится на одном сервере, который выбирается консистентным хешированием.
+   У каждого сервера VIRTUAL_NODES точек на кольце хешей, ключ принадлежит серверу ближайшей точки по часовой
+   стрелке - поэтому ключи делятся между серверами почти поровну, а при добавлении сервера на него переезжает
+   только около 1/N ключей, и только с тех серверов, у которых он забрал участки кольца. Пакетные операции
+   делятся по серверам и выполняются на них параллельно.
+   Добавление сервера (addNode) переносит ключи и на это время останавливает остальные операции клиента.
+   Раскладка ключей известна только этому клиенту: другие клиенты тех же серверов должны знать тот же список. */
+public class ShardedKVClient implements KVClient {
+
+    static final int VIRTUAL_NODES = 160;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+    private final List<String> urls = new ArrayList<>();
+    private final List<KVTaskClient> nodes = new ArrayList<>();
+    private Ring ring;
+
+    // Кольцо: отсортированные точки и номер сервера для каждой
+    private static final class Ring {
+        final long[] points;
+        final int[] owners;
+
+        Ring(List<String> urls) {
+            final int size = urls.size() * VIRTUAL_NODES;
+            long[] hashes = new long[size];
+            Integer[] order = new Integer[size];
+            for (int node = 0; node < urls.size(); node++) {
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    final int i = node * VIRTUAL_NODES + v;
+                    hashes[i] = hash(urls.get(node) + "#" + v);
+                    order[i] = i;
+                }
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+            points = new long[size];
+            owners = new int[size];
+            for (int i = 0; i < size; i++) {
+                points[i] = hashes[order[i]];
+                owners[i] = order[i] / VIRTUAL_NODES;
+            }
+        }
+
+        int owner(String key) {
+            int i = Arrays.binarySearch(points, hash(key));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return owners[i == points.length ? 0 : i];
+        }
+    }
+
+    public ShardedKVClient(List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один KVServer");
+        }
+        for (String url : urls) {
+            add(url);
+        }
+        ring = new Ring(this.urls);
+    }
+
+    private KVTaskClient add(String url) {
+        if (urls.contains(url)) {
+            throw new IllegalArgumentException("KVServer " + url + " уже подключен");
+        }
+        final KVTaskClient node = new KVTaskClient(url);
+        urls.add(url);
+        nodes.add(node);
+        return node;
+    }
+
+    /* FNV-1a по символам строки с перемешиванием из MurmurHash3: хеш не зависит от процесса (в отличие от
+       String.hashCode с его слабыми младшими битами), поэтому раскладка ключей одинакова у всех клиентов. */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /* Подключает сервер и переносит на него ключи с его участков кольца (возвращает их число): сначала значения
+       копируются пакетами, затем клиент переключается на новое кольцо, и только потом копии удаляются со старых
+       серверов. Если копирование не удалось, сервер не подключается и ничего не теряется; если не удалось
+       удаление, на старых серверах остаются копии. Клиент их не читает, а keys отбрасывает ключи, которые вернул
+       не их владелец, поэтому ключ, удаленный потом через delete, из списка не возвращается. */
+    public int addNode(String url) {
+        writeLock.lock();
+        try {
+            final KVTaskClient added = add(url);
+            final Ring next = new Ring(urls);
+            final int addedIndex = nodes.size() - 1;
+            final List<Map<String, String>> removed = new ArrayList<>(addedIndex);
+            int moved = 0;
+            try {
+                for (int node = 0; node < addedIndex; node++) {
+                    List<String> moving = new ArrayList<>();
+                    for (String key : nodes.get(node).keys("")) {
+                        if (next.owner(key) == addedIndex) {
+                            moving.add(key);
+                        }
+                    }
+                    final Map<String, String> values = moving.isEmpty() ? Map.of() : nodes.get(node).loadAll(moving);
+                    if (!values.isEmpty()) {
+                        added.putAll(values);
+                    }
+                    Map<String, String> copies = new LinkedHashMap<>(values.size() * 2);
+                    for (String key : values.keySet()) {
+                        copies.put(key, null);
+                    }
+                    removed.add(copies);
+                    moved += values.size();
+                }
+            } catch (RuntimeException e) {
+                urls.remove(addedIndex);
+                nodes.remove(addedIndex);
+                throw e;
+            }
+            ring = next;
+            for (int node = 0; node < addedIndex; node++) {
+                if (!removed.get(node).isEmpty()) {
+                    nodes.get(node).putAll(removed.get(node));
+                }
+            }
+            return moved;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public List<String> getUrls() {
+        readLock.lock();
+        try {
+            return List.copyOf(urls);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private KVTaskClient node(String key) {
+        return nodes.get(ring.owner(key));
+    }
+
+    @Override
+    public void put(String key, String json) {
+        readLock.lock();
+        try {
+            node(key).put(key, json);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public String load(String key) {
+        readLock.lock();
+        try {
+            return node(key).load(key);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        readLock.lock();
+        try {
+            node(key).delete(key);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Ключ засчитывается только от сервера-владельца: копии, оставшиеся после переноса, не в счет
+    @Override
+    public List<String> keys(String prefix) {
+        readLock.lock();
+        try {
+            TreeSet<String> keys = new TreeSet<>();
+            for (int node = 0; node < nodes.size(); node++) {
+                for (String key : nodes.get(node).keys(prefix)) {
+                    if (ring.owner(key) == node) {
+                        keys.add(key);
+                    }
+                }
+            }
+            return new ArrayList<>(keys);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, String> values) {
+        readLock.lock();
+        try {
+            Map<Integer, Map<String, String>> byNode = new HashMap<>();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                byNode.computeIfAbsent(ring.owner(entry.getKey()), node -> new LinkedHashMap<>())
+                        .put(entry.getKey(), entry.getValue());
+            }
+            if (byNode.size() == 1) {
+                final Map.Entry<Integer, Map<String, String>> only = byNode.entrySet().iterator().next();
+                nodes.get(only.getKey()).putAll(only.getValue());
+                return;
+            }
+            List<CompletableFuture<Void>> futures = new ArrayList<>(byNode.size());
+            for (Map.Entry<Integer, Map<String, String>> entry : byNode.entrySet()) {
+                futures.add(nodes.get(entry.getKey()).putAllAsync(entry.getValue()));
+            }
+            KVTaskClient.join(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> loadAll(Collection<String> keys) {
+        readLock.lock();
+        try {
+            Map<Integer, List<String>> byNode = new HashMap<>();
+            for (String key : keys) {
+                byNode.computeIfAbsent(ring.owner(key), node -> new ArrayList<>()).add(key);
+            }
+            if (byNode.size() <= 1) {
+                return byNode.isEmpty() ? new HashMap<>()
+                        : nodes.get(byNode.keySet().iterator().next()).loadAll(keys);
+            }
+            List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>(byNode.size());
+            for (Map.Entry<Integer, List<String>> entry : byNode.entrySet()) {
+                futures.add(nodes.get(entry.getKey()).loadAllAsync(entry.getValue()));
+            }
+            KVTaskClient.join(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])));
+            Map<String, String> values = new HashMap<>(keys.size() * 2);
+            for (CompletableFuture<Map<String, String>> future : futures) {
+                values.putAll(future.join());
+            }
+            return values;
+        } finally {
+            readLock.unlock();
+        }
+    }
+}
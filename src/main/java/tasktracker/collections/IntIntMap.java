@@ -0,0 +1,150 @@
+package tasktracker.collections;
+
+import java.util.Arrays;
+
+/* Хэш-таблица int -> int с открытой адресацией, устроенная так же, как IntObjectMap, но без упаковки значений.
+   Отсутствие ключа обозначается значением missingValue, заданным при создании. */
+public final class IntIntMap {
+
+    private static final int FREE = 0;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private int size; // без учета ключа 0
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap(int missingValue) {
+        this.missingValue = missingValue;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // Ключи перемешиваются так же, как в IntObjectMap
+    private static int slot(int key, int mask) {
+        final int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int get(int key) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public int put(int key, int value) {
+        if (key == FREE) {
+            final int previous = hasZeroKey ? zeroValue : missingValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return previous;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                final int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > threshold) {
+            rehash(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    public int remove(int key) {
+        if (key == FREE) {
+            final int previous = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = false;
+            return previous;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                final int previous = values[index];
+                size--;
+                shiftKeys(index);
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    // Сдвигает назад записи, которые после удаления ячейки free стали бы недостижимы
+    private void shiftKeys(int free) {
+        int index = free;
+        while (true) {
+            index = (index + 1) & mask;
+            final int current = keys[index];
+            if (current == FREE) {
+                keys[free] = FREE;
+                return;
+            }
+            final int home = slot(current, mask);
+            final boolean movable = free <= index ? (home <= free || home > index) : (home <= free && home > index);
+            if (movable) {
+                keys[free] = current;
+                values[free] = values[index];
+                free = index;
+            }
+        }
+    }
+
+    public int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+
+    public void clear() {
+        if (keys.length > INITIAL_CAPACITY * 64) {
+            allocate(INITIAL_CAPACITY);
+        } else {
+            Arrays.fill(keys, FREE);
+        }
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            final int key = oldKeys[i];
+            if (key != FREE) {
+                int index = slot(key, mask);
+                while (keys[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
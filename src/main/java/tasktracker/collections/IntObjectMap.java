@@ -0,0 +1,329 @@
+package tasktracker.collections;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/* Хэш-таблица int -> объект с открытой адресацией (линейное пробирование) на двух массивах: ключи не упаковываются
+   в Integer, и на запись не создается отдельный узел. Удаление сдвигает следующие записи цепочки назад, поэтому
+   "надгробий" нет и поиск не деградирует после удалений. Ключ 0 хранится отдельно (0 в массиве - пустая ячейка).
+   Для совместимости реализует Map<Integer, V> (в том числе для Gson), но в коде менеджера используются методы
+   с int; forEachEntry и итерация по values() не выделяют памяти на каждую запись. Изменять таблицу во время обхода
+   нельзя: удаление через итератор не поддерживается. */
+public final class IntObjectMap<V> extends AbstractMap<Integer, V> {
+
+    private static final int FREE = 0;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int size; // без учета ключа 0
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public IntObjectMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    /* Ключи перемешиваются (фибоначчиево хэширование): при хэше как у HashMap последовательные id занимают одну
+       сплошную цепочку ячеек, и удаление со сдвигом проходило бы ее до конца - O(n) на каждое удаление */
+    private static int slot(int key, int mask) {
+        final int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroValue : null;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE) {
+            return hasZeroKey;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == FREE) {
+            final V previous = zeroValue;
+            zeroValue = value;
+            hasZeroKey = true;
+            return previous;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                final V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > threshold) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE) {
+            final V previous = zeroValue;
+            zeroValue = null;
+            hasZeroKey = false;
+            return previous;
+        }
+        int index = slot(key, mask);
+        int current;
+        while ((current = keys[index]) != FREE) {
+            if (current == key) {
+                final V previous = (V) values[index];
+                size--;
+                shiftKeys(index);
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Сдвигает назад записи, которые после удаления ячейки free стали бы недостижимы
+    private void shiftKeys(int free) {
+        int index = free;
+        while (true) {
+            index = (index + 1) & mask;
+            final int current = keys[index];
+            if (current == FREE) {
+                keys[free] = FREE;
+                values[free] = null;
+                return;
+            }
+            final int home = slot(current, mask);
+            // запись можно перенести в free, только если free лежит на пути от ее домашней ячейки до index
+            final boolean movable = free <= index ? (home <= free || home > index) : (home <= free && home > index);
+            if (movable) {
+                keys[free] = current;
+                values[free] = values[index];
+                free = index;
+            }
+        }
+    }
+
+    // Обход без выделения памяти на каждую запись
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(IntObjectConsumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(FREE, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        if (keys.length > INITIAL_CAPACITY * 64) {
+            allocate(INITIAL_CAPACITY); // не держим память после удаления большой доски
+        } else {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(values, null);
+        }
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            final int key = oldKeys[i];
+            if (key != FREE) {
+                int index = slot(key, mask);
+                while (keys[index] != FREE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    // Методы Map<Integer, V> - через int-версии
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get((int) (Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && containsKey((int) (Integer) key);
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put((int) key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove((int) (Integer) key) : null;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<V>() {
+                    @Override
+                    V current(int index) {
+                        return valueAt(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new SlotIterator<Integer>() {
+                    @Override
+                    Integer current(int index) {
+                        return index < 0 ? FREE : keys[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new SlotIterator<Entry<Integer, V>>() {
+                    @Override
+                    Entry<Integer, V> current(int index) {
+                        return new SimpleImmutableEntry<>(index < 0 ? FREE : keys[index], valueAt(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return index < 0 ? zeroValue : (V) values[index];
+    }
+
+    // Обход занятых ячеек; индекс -1 - запись с ключом 0
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private int next = hasZeroKey ? -1 : advance(0);
+
+        abstract T current(int index);
+
+        private int advance(int from) {
+            int index = from;
+            while (index < keys.length && keys[index] == FREE) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int index = next;
+            next = advance(index + 1);
+            return current(index);
+        }
+    }
+}
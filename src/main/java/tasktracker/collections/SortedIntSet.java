@@ -0,0 +1,93 @@
+package tasktracker.collections;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/* Отсортированное множество int на массиве без упаковки в Integer. id выдаются по возрастанию, поэтому
+   добавление почти всегда идет в конец за O(1); поиск позиции курсора - бинарный поиск за O(log n). */
+public final class SortedIntSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    public boolean add(int value) {
+        if (size == 0 || value > values[size - 1]) {
+            ensureCapacity();
+            values[size++] = value;
+            return true;
+        }
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        ensureCapacity();
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    // Удаляет все подходящие значения одним проходом со сдвигом; возвращает количество удаленных
+    public int removeIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(values[i])) {
+                values[kept++] = values[i];
+            }
+        }
+        final int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    // Позиция первого значения больше value (size, если таких нет)
+    public int indexAfter(int value) {
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + ", размер " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        if (values.length > INITIAL_CAPACITY * 64) {
+            values = new int[INITIAL_CAPACITY]; // не держим память после удаления большой доски
+        }
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+    }
+}
@@ -20,6 +20,9 @@ public class TaskTimeValidationException extends RuntimeException {
 
     @Override
     public String getMessage() {
+        if (task == null) {
+            return super.getMessage();
+        }
         return super.getMessage() + "id: " + task.getId() + ", name: " + task.getName() + ", startTime: "
                 + task.getStartTimeInFormat();
     }
@@ -8,7 +8,11 @@ public interface HistoryManager {
 
     void addToHistory(Task task);
 
+    // Неизменяемый снимок истории от давних просмотров к последним
     List<Task> getHistory();
 
+    // Не больше limit последних просмотров (в том же порядке), без построения всей истории
+    List<Task> getLastViewed(int limit);
+
     void remove(int id);
 }
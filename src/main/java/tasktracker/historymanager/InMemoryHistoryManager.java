@@ -1,97 +1,161 @@
 package tasktracker.historymanager;
 
+import tasktracker.collections.IntIntMap;
 import tasktracker.tasks.Task;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/* История просмотров ограниченного размера: при переполнении вытесняется самый давний просмотр.
+   Двусвязный список хранится не в объектах-узлах, а в параллельных массивах prev/next по номерам ячеек,
+   id задачи сопоставляется номеру ячейки в IntIntMap. Освободившиеся ячейки связаны в список свободных через next,
+   поэтому добавление, удаление и перенос в конец - O(1) и без выделения памяти (кроме роста массивов).
+   Список для getHistory() строится только при первом чтении после изменения и отдается всем читателям. */
 public class InMemoryHistoryManager implements HistoryManager {
 
-    // Хэш-таблица для хранения связки id и узлов
-    private final Map<Integer, Node> nodeMap = new HashMap<>();
-
-    private Node head;
-    private Node tail;
+    public static final int DEFAULT_CAPACITY = 10_000;
+    private static final int NONE = -1;
+    private static final int INITIAL_SLOTS = 16;
+
+    private final int capacity;
+    // Связка id задачи и номера ячейки
+    private final IntIntMap slotById = new IntIntMap(NONE);
+    private Task[] tasks;
+    private int[] prev;
+    private int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int freeSlot = NONE; // начало списка свободных ячеек
+    private int used; // сколько ячеек массивов уже когда-либо занималось
+    private List<Task> snapshot; // null - история изменилась после последнего чтения
+
+    public InMemoryHistoryManager() {
+        this(DEFAULT_CAPACITY);
+    }
 
-    public void linkLast(Task task) {
-        final Node oldTail = tail;
-        final Node newNode = new Node(oldTail, task, null);
-        tail = newNode;
-        if (oldTail == null) {
-            head = newNode;
-        } else {
-            oldTail.next = newNode;
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным: " + capacity);
         }
+        this.capacity = capacity;
+        final int slots = Math.min(capacity, INITIAL_SLOTS);
+        tasks = new Task[slots];
+        prev = new int[slots];
+        next = new int[slots];
     }
 
     @Override
     public void addToHistory(Task task) {
-        if (nodeMap.containsKey(task.getId())) {
-            remove(task.getId());
-            nodeMap.remove(task.getId());
+        int slot = slotById.get(task.getId());
+        if (slot != NONE) {
+            // повторный просмотр - переносим ячейку в конец
+            unlink(slot);
+        } else {
+            if (slotById.size() == capacity) {
+                remove(tasks[head].getId()); // вытесняем самый давний просмотр
+            }
+            slot = allocateSlot();
+            slotById.put(task.getId(), slot);
         }
-        linkLast(task);
-        nodeMap.put(task.getId(), tail);
+        tasks[slot] = task;
+        linkLast(slot);
+        snapshot = null;
     }
 
     @Override
     public List<Task> getHistory() {
-        List<Task> historyList = new ArrayList<>();
-        Node node = head;
-        while (node != null) {
-            historyList.add(node.task);
-            node = node.next;
+        if (snapshot == null) {
+            final Task[] history = new Task[slotById.size()];
+            int index = 0;
+            for (int slot = head; slot != NONE; slot = next[slot]) {
+                history[index++] = tasks[slot];
+            }
+            snapshot = Collections.unmodifiableList(Arrays.asList(history));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public List<Task> getLastViewed(int limit) {
+        final int size = slotById.size();
+        final int count = Math.max(0, Math.min(limit, size));
+        if (snapshot != null) {
+            return snapshot.subList(size - count, size);
+        }
+        // идем от последнего просмотра назад ровно count шагов
+        final Task[] recent = new Task[count];
+        int slot = tail;
+        for (int index = count - 1; index >= 0; index--) {
+            recent[index] = tasks[slot];
+            slot = prev[slot];
         }
-        return historyList;
+        return Collections.unmodifiableList(Arrays.asList(recent));
     }
 
     @Override
     public void remove(int id) {
-        Node node = nodeMap.get(id);
-        removeNode(node);
+        final int slot = slotById.remove(id);
+        if (slot == NONE) {
+            return;
+        }
+        unlink(slot);
+        tasks[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        snapshot = null;
     }
 
-    private void removeNode(Node node) {
-        if (node == null) return;
-        
-        final Node prevLink = node.prev;
-        final Node nextLink = node.next;
+    public int getCapacity() {
+        return capacity;
+    }
 
-        if (prevLink == null) {
-            head = nextLink;
-        } else {
-            prevLink.next = nextLink;
-            node.next = null; // обнуляем ссылку
+    private int allocateSlot() {
+        if (freeSlot != NONE) {
+            final int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
         }
+        if (used == tasks.length) {
+            final int slots = (int) Math.min(capacity, tasks.length * 2L);
+            tasks = Arrays.copyOf(tasks, slots);
+            prev = Arrays.copyOf(prev, slots);
+            next = Arrays.copyOf(next, slots);
+        }
+        return used++;
+    }
 
-        if (nextLink == null) {
-            tail = prevLink;
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
         } else {
-            nextLink.prev = prevLink;
-            node.prev = null; // обнуляем ссылку
+            next[tail] = slot;
         }
+        tail = slot;
+    }
 
-        node.task = null;
+    private void unlink(int slot) {
+        final int prevSlot = prev[slot];
+        final int nextSlot = next[slot];
+        if (prevSlot == NONE) {
+            head = nextSlot;
+        } else {
+            next[prevSlot] = nextSlot;
+        }
+        if (nextSlot == NONE) {
+            tail = prevSlot;
+        } else {
+            prev[nextSlot] = prevSlot;
+        }
     }
 
     @Override
     public String toString() {
         return "InMemoryHistoryManager{" +
-                "nodeMap=" + nodeMap +
+                "capacity=" + capacity +
+                ", history=" + getHistory() +
                 '}';
     }
-
-    public static class Node {
-        private Node prev;
-        private Task task;
-        private Node next;
-
-        public Node(Node prev, Task task, Node next) {
-            this.prev = prev;
-            this.task = task;
-            this.next = next;
-        }
-    }
 }
@@ -1,16 +1,23 @@
 package tasktracker.managers;
 
+import tasktracker.api.ShardedKVClient;
 import tasktracker.historymanager.HistoryManager;
 import tasktracker.historymanager.InMemoryHistoryManager;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.taskmanager.DurabilityPolicy;
 import tasktracker.taskmanager.FileBackedTaskManager;
 import tasktracker.taskmanager.InMemoryTaskManager;
+import tasktracker.taskmanager.KVTaskManager;
+import tasktracker.taskmanager.SnapshotFormat;
 import tasktracker.taskmanager.TaskManager;
 
 import java.io.File;
+import java.util.List;
 
 public final class Managers {
 
     private static final File FILE_PATH = new File("src/main/resources/fileForSave.csv");
+    private static final File BINARY_FILE_PATH = new File("src/main/resources/fileForSave.bin");
 
     private Managers() {}
 
@@ -18,14 +25,49 @@ public final class Managers {
         return new FileBackedTaskManager(FILE_PATH);
     }
 
+    // Менеджер, который дописывает изменения в журнал вместо перезаписи всего файла
+    public static TaskManager getJournaledFile() {
+        return new FileBackedTaskManager(FILE_PATH, true);
+    }
+
+    // Менеджер с фоновой записью изменений в журнал согласно политике durability
+    public static FileBackedTaskManager getWriteBehindFile(DurabilityPolicy durability) {
+        return new FileBackedTaskManager(FILE_PATH, true, durability);
+    }
+
+    // Менеджер, который хранит снимок в двоичном формате
+    public static TaskManager getBinaryFile() {
+        return new FileBackedTaskManager(BINARY_FILE_PATH, SnapshotFormat.BINARY);
+    }
+
     public static TaskManager getDefault() {
         return new InMemoryTaskManager();
     }
 
+    // Менеджер, который хранит каждую задачу под своим ключом в KVServer по адресу url
+    public static TaskManager getKV(String url) {
+        return new KVTaskManager(url);
+    }
+
+    // То же, но ключи распределяются между несколькими KVServer консистентным хешированием
+    public static TaskManager getShardedKV(List<String> urls) {
+        return new KVTaskManager(new ShardedKVClient(urls));
+    }
+
+    // Потокобезопасный менеджер для одновременных обработчиков HTTP-сервера
+    public static TaskManager getConcurrent(TaskManager delegate) {
+        return new ConcurrentTaskManager(delegate);
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    // История, хранящая не больше capacity последних просмотров
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
+
     public static File getFilePath() {
         return FILE_PATH;
     }
@@ -0,0 +1,201 @@
+package tasktracker.taskmanager;
+
+import tasktracker.exceptions.ManagerSaveException;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+import tasktracker.tasks.TaskTypes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/* Двоичный формат снимка менеджера (версия 1), все числа big-endian:
+     заголовок:  int magic "KBSN", short версия, short флаги (0), int количество задач
+     задача:     int id, byte тип, byte статус, long начало в минутах от эпохи (Long.MIN_VALUE - без времени),
+                 long длительность, int id эпика (0 - не подзадача),
+                 int длина + UTF-8 байты названия, int длина + UTF-8 байты описания
+     история:    int количество, затем id задач
+     окончание:  int CRC32 всех предыдущих байт
+   В отличие от CSV запятые и переводы строк в названиях и описаниях не ломают файл. Той же кодировкой
+   (без заголовка и CRC) записываются задачи в журнал менеджера в двоичном режиме, см. encodeTask. */
+final class BinarySnapshot {
+
+    static final int MAGIC = 0x4B42534E; // "KBSN"
+    static final short VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final long NO_START_TIME = Long.MIN_VALUE;
+    private static final TaskTypes[] TASK_TYPES = TaskTypes.values();
+    private static final TaskStatuses[] TASK_STATUSES = TaskStatuses.values();
+
+    private BinarySnapshot() {
+    }
+
+    // Проверяет по заголовку, записан ли файл в двоичном формате
+    static boolean isBinary(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось прочитать файл " + file, e);
+        }
+    }
+
+    static byte[] encode(List<Collection<? extends Task>> groups, List<Task> history) {
+        int count = 0;
+        for (Collection<? extends Task> group : groups) {
+            count += group.size();
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + count * 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(count);
+            for (Collection<? extends Task> group : groups) {
+                for (Task task : group) {
+                    writeTask(out, task);
+                }
+            }
+            out.writeInt(history.size());
+            for (Task task : history) {
+                out.writeInt(task.getId());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось сформировать снимок", e);
+        }
+    }
+
+    // Одна задача в том же формате, что и в снимке
+    static byte[] encodeTask(Task task) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            writeTask(new DataOutputStream(bytes), task);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось сформировать запись о задаче " + task.getId(), e);
+        }
+    }
+
+    static Task decodeTask(byte[] bytes) {
+        try {
+            return readTask(ByteBuffer.wrap(bytes), new byte[256]);
+        } catch (RuntimeException e) {
+            throw new ManagerSaveException("Не удалось прочитать запись о задаче", e);
+        }
+    }
+
+    private static void writeTask(DataOutputStream out, Task task) throws IOException {
+        out.writeInt(task.getId());
+        out.writeByte(task.getType().ordinal());
+        out.writeByte(task.getStatus().ordinal());
+        LocalDateTime startTime = task.getStartTime();
+        out.writeLong(startTime == null ? NO_START_TIME : startTime.toEpochSecond(ZoneOffset.UTC) / 60);
+        out.writeLong(task.getDuration());
+        out.writeInt(task instanceof Subtask ? ((Subtask) task).getEpicId() : 0);
+        writeString(out, task.getName());
+        writeString(out, task.getDescription());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Читает снимок через отображение файла в память и передает задачи и историю обработчикам
+    static void decode(File file, Consumer<Task> tasks, IntConsumer history) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE + 8 || buffer.getInt(0) != MAGIC) {
+                throw new ManagerSaveException("Файл " + file + " не является двоичным снимком");
+            }
+            if (buffer.getShort(4) != VERSION) {
+                throw new ManagerSaveException("Неподдерживаемая версия снимка: " + buffer.getShort(4));
+            }
+            final int crcPosition = buffer.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(crcPosition));
+            if ((int) crc.getValue() != buffer.getInt(crcPosition)) {
+                throw new ManagerSaveException("Снимок " + file + " поврежден: не совпадает контрольная сумма");
+            }
+
+            buffer.position(8);
+            final int count = buffer.getInt();
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; i++) {
+                tasks.accept(readTask(buffer, scratch));
+            }
+            final int historySize = buffer.getInt();
+            for (int i = 0; i < historySize; i++) {
+                history.accept(buffer.getInt());
+            }
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ManagerSaveException) {
+                throw (ManagerSaveException) e;
+            }
+            throw new ManagerSaveException("Не удалось прочитать снимок " + file, e);
+        }
+    }
+
+    private static Task readTask(ByteBuffer buffer, byte[] scratch) {
+        final int id = buffer.getInt();
+        final TaskTypes type = TASK_TYPES[buffer.get()];
+        final TaskStatuses status = TASK_STATUSES[buffer.get()];
+        final long startMinute = buffer.getLong();
+        final LocalDateTime startTime = startMinute == NO_START_TIME
+                ? null : LocalDateTime.ofEpochSecond(startMinute * 60, 0, ZoneOffset.UTC);
+        final long duration = buffer.getLong();
+        final int epicId = buffer.getInt();
+        final String name = readString(buffer, scratch);
+        final String description = readString(buffer, scratch);
+
+        switch (type) {
+            case TASK:
+                return new Task(id, name, description, status, startTime, duration);
+            case EPIC:
+                return new Epic(id, name, description, status, startTime, duration);
+            case SUBTASK:
+                return new Subtask(id, name, description, status, epicId, startTime, duration);
+        }
+        throw new ManagerSaveException("Не удалось прочитать таску типа " + type);
+    }
+
+    // Общий буфер для строк; строка, которая в него не помещается, читается в отдельный массив
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] target = length > scratch.length ? new byte[length] : scratch;
+        buffer.get(target, 0, length);
+        return new String(target, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,284 @@
+package tasktracker.taskmanager;
+
+import tasktracker.exceptions.ManagerSaveException;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/* Потокобезопасная обертка над любым менеджером задач (для обработчиков HTTP-сервера в пуле потоков).
+   Изменения выполняются под блокировкой записи, поэтому пересчет статуса и времени эпиков виден целиком.
+   Чтения выполняются параллельно под блокировкой чтения, в том числе просмотры задач по id: они дописывают
+   историю, и делегат сам упорядочивает только это дописывание - монитором истории (InMemoryTaskManager), а
+   FileBackedTaskManager и KVTaskManager еще и своим коротким монитором незаписанных просмотров, без блокировки
+   всего менеджера. Поиск задачи выполняется параллельно с остальными чтениями.
+   Делегат с записью на диск при каждом изменении (DurabilityPolicy.EVERY_OP) пишет файл под блокировкой записи,
+   и чтения на это время ждут; для сервера нужен DurabilityPolicy.INTERVAL (см. Managers.getWriteBehindFile). */
+public class ConcurrentTaskManager implements TaskManager, AutoCloseable {
+
+    private final TaskManager delegate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+
+    public ConcurrentTaskManager() {
+        this(new InMemoryTaskManager());
+    }
+
+    public ConcurrentTaskManager(TaskManager delegate) {
+        this.delegate = delegate;
+    }
+
+    /* Выполняет несколько чтений как одно: между ними менеджер не меняется (допускаются и просмотры по id).
+       Так же сериализуются живые эпики: их статус, время и подзадачи меняются на месте под блокировкой записи. */
+    public <T> T read(Function<TaskManager, T> action) {
+        readLock.lock();
+        try {
+            return action.apply(delegate);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Выполняет несколько изменений атомарно
+    public <T> T write(Function<TaskManager, T> action) {
+        writeLock.lock();
+        try {
+            return action.apply(delegate);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        writeLock.lock();
+        try {
+            action.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void createTask(Task task) {
+        write(() -> delegate.createTask(task));
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        write(() -> delegate.createEpic(epic));
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        write(() -> delegate.createSubtask(subtask));
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return read(m -> m.getTaskById(id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return read(m -> m.getEpicById(id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return read(m -> m.getSubtaskById(id));
+    }
+
+    @Override
+    public ArrayList<Task> getListAllTasks() {
+        return read(TaskManager::getListAllTasks);
+    }
+
+    @Override
+    public ArrayList<Epic> getListAllEpics() {
+        return read(TaskManager::getListAllEpics);
+    }
+
+    @Override
+    public ArrayList<Subtask> getListAllSubtasks() {
+        return read(TaskManager::getListAllSubtasks);
+    }
+
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return read(m -> m.getTasksPage(afterId, limit));
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return read(m -> m.getEpicsPage(afterId, limit));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return read(m -> m.getSubtasksPage(afterId, limit));
+    }
+
+    @Override
+    public List<Task> getAllTasksAllTypesPage(int afterId, int limit) {
+        return read(m -> m.getAllTasksAllTypesPage(afterId, limit));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> delegate.updateTask(task));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> delegate.updateEpic(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        write(() -> delegate.updateSubtask(subtask));
+    }
+
+    @Override
+    public void removeTaskById(int taskId) {
+        write(() -> delegate.removeTaskById(taskId));
+    }
+
+    @Override
+    public void removeEpicById(int epicId) {
+        write(() -> delegate.removeEpicById(epicId));
+    }
+
+    @Override
+    public void removeSubtaskById(int subtaskId) {
+        write(() -> delegate.removeSubtaskById(subtaskId));
+    }
+
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        write(() -> delegate.createAll(tasks));
+    }
+
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        write(() -> delegate.updateAll(tasks));
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        write(() -> delegate.removeAll(ids));
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        write(delegate::deleteAllTasks);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        write(delegate::deleteAllEpics);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        write(delegate::deleteAllSubtasks);
+    }
+
+    // Возвращаются копии: живые коллекции менеджера нельзя обходить без блокировки
+    @Override
+    public Map<Integer, Subtask> getListAllSubtasksByEpic(Epic epic) {
+        return read(m -> new HashMap<>(m.getListAllSubtasksByEpic(epic)));
+    }
+
+    // История отдается неизменяемым снимком, поэтому ее можно читать и после снятия блокировки
+    @Override
+    public List<Task> getHistory() {
+        return read(TaskManager::getHistory);
+    }
+
+    @Override
+    public List<Task> getLastViewed(int limit) {
+        return read(m -> m.getLastViewed(limit));
+    }
+
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return read(m -> new LinkedHashSet<>(m.getPrioritizedTasks()));
+    }
+
+    @Override
+    public List<Task> getAllTasksAllTypes() {
+        return read(TaskManager::getAllTasksAllTypes);
+    }
+
+    @Override
+    public long getTasksVersion() {
+        return read(TaskManager::getTasksVersion);
+    }
+
+    @Override
+    public long getEpicsVersion() {
+        return read(TaskManager::getEpicsVersion);
+    }
+
+    @Override
+    public long getSubtasksVersion() {
+        return read(TaskManager::getSubtasksVersion);
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        return read(TaskManager::getHistoryVersion);
+    }
+
+    @Override
+    public long getEpicVersion(int epicId) {
+        return read(m -> m.getEpicVersion(epicId));
+    }
+
+    // Подписчики вызываются внутри изменения, то есть под блокировкой записи
+    @Override
+    public void addChangeListener(TaskChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    // Счетчик id атомарный, блокировка менеджера не нужна
+    @Override
+    public int generateId() {
+        return delegate.generateId();
+    }
+
+    /* Закрывает делегат, если он это умеет (FileBackedTaskManager, KVTaskManager): незаписанные изменения уходят
+       на диск или в KVServer. Выполняется под блокировкой записи, чтобы не пересекаться с изменениями. */
+    @Override
+    public void close() {
+        if (!(delegate instanceof AutoCloseable)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            ((AutoCloseable) delegate).close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ManagerSaveException("Не удалось закрыть менеджер", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return read(TaskManager::toString);
+    }
+}
@@ -0,0 +1,8 @@
+package tasktracker.taskmanager;
+
+// Политики записи изменений FileBackedTaskManager на диск
+public enum DurabilityPolicy {
+    EVERY_OP,    // каждое изменение записывается до возврата из метода (поведение по умолчанию)
+    INTERVAL,    // изменения копятся и записываются фоновым потоком одной записью раз в интервал или раз в N операций
+    ON_SHUTDOWN  // изменения записываются только при flush(), save() или close()
+}
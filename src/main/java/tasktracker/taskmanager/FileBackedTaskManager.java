@@ -3,60 +3,485 @@ package tasktracker.taskmanager;
 import tasktracker.exceptions.ManagerSaveException;
 import tasktracker.tasks.*;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    // Журнал сжимается в снимок, когда в нем записей больше, чем задач на доске (но не чаще, чем раз в столько записей)
+    private static final int MIN_JOURNAL_RECORDS_TO_COMPACT = 1_000;
+
+    // Типы записей журнала
+    private static final String UPSERT = "U";
+    private static final String UPSERT_BINARY = "B"; // задача в кодировке BinarySnapshot, Base64
+    private static final String REMOVE = "R";
+    private static final String CLEAR = "C";
+    private static final String VIEW = "H"; // просмотры пишутся в отдельный лог истории, здесь только для старых журналов
+
+    // Настройки фоновой записи по умолчанию
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5;
+    private static final int DEFAULT_MAX_PENDING_OPS = 1_000;
+
+    // Сколько id резервируется одной записью файла с границей выданных id
+    private static final int ID_BLOCK_SIZE = 1_000;
+
+    private static final TaskTypes[] TASK_TYPES = TaskTypes.values();
+    private static final TaskStatuses[] TASK_STATUSES = TaskStatuses.values();
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
     private File fileName;
+    private final TaskJournal journal;
+    private final TaskJournal historyLog; // просмотры задач, записанные после последнего снимка (по id на строку)
+    private final boolean journaled; // true - дописываем журнал, false - перезаписываем файл целиком
+    private final DurabilityPolicy durability;
+    private final SnapshotFormat format;
+    private final WriteBehindFlusher flusher; // только для DurabilityPolicy.INTERVAL
+    private final ReentrantLock flushLock = new ReentrantLock(); // записи на диск выполняются по одной
+
+    // Незаписанные изменения; доступ только под блокировкой менеджера (synchronized (this))
+    private final List<String> pendingRecords = new ArrayList<>();
+    /* Просмотры не требуют перезаписи основного файла и не берут блокировку менеджера: их список защищен своим
+       монитором viewsLock (порядок захвата: this, затем viewsLock) */
+    private final Object viewsLock = new Object();
+    private final List<String> pendingViews = new ArrayList<>();
+    private boolean dirty;
+    private boolean snapshotRequired; // предыдущая запись снимка не удалась, журналу доверять нельзя
+    private boolean restoring; // во время восстановления из файла ничего не записываем
+    private int reservedIds; // граница id, уже записанная в файл id; новые id до нее файл не трогают
+    private int restoredMaxId; // максимальный id среди восстановленных задач
+    /* Граница id этого менеджера: максимум из границы, прочитанной при загрузке, и id созданных им задач.
+       Общий счетчик id на процесс, поэтому его значение может включать id задач других менеджеров. */
+    private int issuedIds;
 
     public FileBackedTaskManager(File fileName) {
+        this(fileName, false);
+    }
+
+    public FileBackedTaskManager(File fileName, boolean journaled) {
+        this(fileName, journaled, DurabilityPolicy.EVERY_OP);
+    }
+
+    public FileBackedTaskManager(File fileName, boolean journaled, DurabilityPolicy durability) {
+        this(fileName, journaled, durability, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_PENDING_OPS);
+    }
+
+    public FileBackedTaskManager(File fileName, boolean journaled, DurabilityPolicy durability,
+                                 long flushIntervalMillis, int maxPendingOps) {
+        this(fileName, journaled, durability, flushIntervalMillis, maxPendingOps, SnapshotFormat.CSV);
+    }
+
+    public FileBackedTaskManager(File fileName, SnapshotFormat format) {
+        this(fileName, false, DurabilityPolicy.EVERY_OP, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_PENDING_OPS,
+                format);
+    }
+
+    public FileBackedTaskManager(File fileName, boolean journaled, DurabilityPolicy durability,
+                                 long flushIntervalMillis, int maxPendingOps, SnapshotFormat format) {
+        this(fileName, journaled, durability, flushIntervalMillis, maxPendingOps, format, Task.getIdAllocator());
+    }
+
+    // idAllocator - свой счетчик id менеджера; граница из файла id сдвигает только его
+    public FileBackedTaskManager(File fileName, boolean journaled, DurabilityPolicy durability,
+                                 long flushIntervalMillis, int maxPendingOps, SnapshotFormat format,
+                                 TaskIdAllocator idAllocator) {
+        super(idAllocator);
         this.fileName = fileName;
+        this.journaled = journaled;
+        this.durability = durability;
+        this.format = format;
+        this.journal = new TaskJournal(getJournalFile(fileName));
+        this.historyLog = new TaskJournal(getHistoryFile(fileName));
+        this.flusher = durability == DurabilityPolicy.INTERVAL
+                ? new WriteBehindFlusher(this::flush, flushIntervalMillis, maxPendingOps)
+                : null;
+    }
+
+    // Журнал хранится рядом с файлом снимка
+    public static File getJournalFile(File fileName) {
+        return new File(fileName.getPath() + ".journal");
+    }
+
+    // Лог просмотров тоже хранится рядом с файлом снимка
+    public static File getHistoryFile(File fileName) {
+        return new File(fileName.getPath() + ".history");
+    }
+
+    // Граница выданных id (одно число) - тоже рядом со снимком
+    public static File getIdsFile(File fileName) {
+        return new File(fileName.getPath() + ".ids");
     }
 
     // Метод для сохранения тасок в файл
     public void save() {
-        try (Writer fw = new FileWriter(fileName)) {
-            fw.write("id,type,name,status,description,startTime,duration,epic\n");
-            fw.write(String.format("%s", super.toString()));
-            fw.write("\n");
-            fw.write(String.format("%s", historyToString()));
+        flush(true);
+    }
+
+    /* Метод записывает все накопленные изменения и возвращается, когда они на диске (подтверждение записи):
+       снимок, журнал и лог истории сбрасываются fsync, после переименования - и каталог. */
+    public void flush() {
+        flush(false);
+    }
+
+    // Записывает накопленные изменения и останавливает фоновую запись
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.close();
+        }
+        flush();
+        synchronized (this) {
+            // при штатной остановке записываем точное значение, чтобы после перезапуска не пропускать блок
+            if (issuedIds != reservedIds) {
+                writeReservedIds(issuedIds);
+            }
+        }
+    }
+
+    /* Резервирует блок id, вызывается под блокировкой менеджера до учета новой задачи. Файл с границей
+       перезаписывается один раз на ID_BLOCK_SIZE новых задач, а после сбоя счетчик продолжается с границы,
+       поэтому id удаленных задач повторно не выдаются. */
+    private void reserveIds(int id) {
+        if (restoring) {
+            return;
+        }
+        if (id > reservedIds) {
+            writeReservedIds(id + ID_BLOCK_SIZE);
+        }
+        issuedIds = Math.max(issuedIds, id);
+    }
+
+    private void writeReservedIds(int ceiling) {
+        final Path target = getIdsFile(fileName).toPath();
+        final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, Integer.toString(ceiling).getBytes(StandardCharsets.UTF_8));
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать границу id в " + target, e);
+        }
+        reservedIds = ceiling;
+    }
+
+    private static int readReservedIds(File fileName) throws IOException {
+        final File file = getIdsFile(fileName);
+        return file.exists() ? Integer.parseInt(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim()) : 0;
+    }
+
+    /* Состояние снимается под блокировкой менеджера, а запись на диск идет уже без нее, чтобы не задерживать
+       изменения. Параллельные вызовы выстраиваются в очередь на flushLock, и все, кто ждал, получают одну общую
+       запись (group commit): следующий вызов находит, что записывать уже нечего. */
+    private void flush(boolean forceSnapshot) {
+        flushLock.lock();
+        try {
+            byte[] snapshot = null;
+            String[] records = null;
+            String[] views = null;
+            synchronized (this) {
+                // снимок истории и очистка списка просмотров - одно действие для параллельных просмотров
+                synchronized (viewsLock) {
+                    if (!dirty && !forceSnapshot && pendingViews.isEmpty()) {
+                        return;
+                    }
+                    if (forceSnapshot || (dirty && (snapshotRequired || !journaled || isJournalTooLong()))) {
+                        snapshot = snapshotToBytes(); // история попадает в снимок целиком
+                    } else {
+                        records = pendingRecords.toArray(new String[0]);
+                        views = pendingViews.toArray(new String[0]);
+                    }
+                    pendingRecords.clear();
+                    pendingViews.clear();
+                }
+                dirty = false;
+            }
+            writeChanges(snapshot, records, views);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeChanges(byte[] snapshot, String[] records, String[] views) {
+        try {
+            if (snapshot != null) {
+                writeSnapshot(snapshot);
+                journal.reset(); // все изменения из журнала уже есть в снимке
+                historyLog.reset();
+            } else {
+                if (records.length > 0) {
+                    journal.append(records);
+                }
+                if (views.length > 0) {
+                    historyLog.append(views); // основной файл при просмотрах не трогаем
+                }
+            }
+            synchronized (this) {
+                snapshotRequired = false;
+            }
+        } catch (RuntimeException e) {
+            // возвращаем изменения в очередь, чтобы они попали в следующую запись
+            synchronized (this) {
+                dirty = true;
+                if (snapshot != null) {
+                    snapshotRequired = true;
+                } else {
+                    pendingRecords.addAll(0, Arrays.asList(records));
+                    synchronized (viewsLock) {
+                        pendingViews.addAll(0, Arrays.asList(views));
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    /* Снимок пишется во временный файл и заменяет старый атомарным переименованием: при сбое во время записи
+       остается прежний снимок вместе с журналом, а журнал очищается только после переименования. */
+    private void writeSnapshot(byte[] snapshot) {
+        final Path target = fileName.toPath();
+        final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, snapshot);
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать снимок в " + target, e);
+        }
+        syncDirectory(target);
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /* fsync каталога, чтобы созданный или переименованный файл пережил сбой ОС. Не все ОС позволяют открыть
+       каталог (Windows), там запись каталога остается на усмотрение файловой системы. */
+    static void syncDirectory(Path file) {
+        final Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException e) {
-            throw new ManagerSaveException("Что-то пошло не так.");
+            // каталог не открывается как файл - пропускаем
+        }
+    }
+
+    private byte[] snapshotToBytes() {
+        if (format == SnapshotFormat.BINARY) {
+            return BinarySnapshot.encode(List.of(getMapOfTasks().values(), getMapOfEpics().values(),
+                    getMapOfSubtasks().values()), getHistory());
+        }
+        String snapshot = "id,type,name,status,description,startTime,duration,epic\n" + super.toString() + "\n"
+                + historyToString();
+        return snapshot.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Журнал сжимается в снимок, когда в нем записей больше, чем задач на доске
+    private boolean isJournalTooLong() {
+        int tasksCount = getMapOfTasks().size() + getMapOfEpics().size() + getMapOfSubtasks().size();
+        return journal.size() + pendingRecords.size() > Math.max(MIN_JOURNAL_RECORDS_TO_COMPACT, tasksCount);
+    }
+
+    // Метод для учета изменения, вызывается под блокировкой менеджера
+    private void commit(String... records) {
+        if (restoring) {
+            return;
+        }
+        if (journaled) {
+            Collections.addAll(pendingRecords, records);
+        }
+        dirty = true;
+    }
+
+    // Метод для записи изменения на диск согласно политике, вызывается уже без блокировки менеджера
+    private void flushIfRequired() {
+        if (restoring) {
+            return;
+        }
+        switch (durability) {
+            case EVERY_OP:
+                flush();
+                break;
+            case INTERVAL:
+                flusher.requestFlush();
+                break;
+            case ON_SHUTDOWN:
+                break;
+        }
+    }
+
+    // Метод для изменения состояния под блокировкой менеджера: change меняет состояние и возвращает записи журнала
+    private void mutate(Supplier<String[]> change) {
+        synchronized (this) {
+            commit(change.get());
+        }
+        flushIfRequired();
+    }
+
+    /* Метод для чтения задачи по id. Просмотр меняет только историю: он запоминается в памяти и попадает на диск
+       со следующей записью (в лог истории или в снимок), сам запрос на чтение файлы не трогает. Блокировка
+       менеджера не берется: изменения задач исключает вызывающий (ConcurrentTaskManager), а viewsLock лишь
+       упорядочивает просмотр относительно снимка истории в flush. */
+    private <T extends Task> T view(Supplier<T> read) {
+        final T task;
+        synchronized (viewsLock) {
+            task = read.get();
+            if (task == null || restoring) {
+                return task;
+            }
+            pendingViews.add(String.valueOf(task.getId()));
+        }
+        if (flusher != null) {
+            flusher.requestFlush();
+        }
+        return task;
+    }
+
+    // Методы для формирования записей журнала
+    private static String[] records(String... records) {
+        return records;
+    }
+
+    /* В двоичном формате задача и в журнале пишется кодировкой BinarySnapshot (в Base64, чтобы запись оставалась
+       одной строкой): запятые и переводы строк в названии не ломают восстановление, как и в снимке. */
+    private String upsertRecord(Task task) {
+        if (format == SnapshotFormat.BINARY) {
+            return UPSERT_BINARY + "," + Base64.getEncoder().encodeToString(BinarySnapshot.encodeTask(task));
+        }
+        return UPSERT + "," + task;
+    }
+
+    private static String removeRecord(int id) {
+        return REMOVE + "," + id;
+    }
+
+    private static String clearRecord(TaskTypes type) {
+        return CLEAR + "," + type;
+    }
+
+    // Запись о подзадаче дополняется записью о ее эпике, т.к. у эпика пересчитываются статус и время
+    private String[] subtaskRecords(String subtaskRecord, int... epicIds) {
+        List<String> records = new ArrayList<>();
+        records.add(subtaskRecord);
+        for (int epicId : epicIds) {
+            Epic epic = getMapOfEpics().get(epicId);
+            if (epic != null) {
+                records.add(upsertRecord(epic));
+            }
+        }
+        return records.toArray(new String[0]);
+    }
+
+    // Метод для применения одной записи журнала при восстановлении (повторное применение безопасно)
+    private void applyJournalRecord(String record) {
+        final int separator = record.indexOf(',');
+        final String operation = record.substring(0, separator);
+        final String value = record.substring(separator + 1);
+
+        switch (operation) {
+            case UPSERT:
+                restoreTask(fromString(value));
+                break;
+            case UPSERT_BINARY:
+                restoreTask(BinarySnapshot.decodeTask(Base64.getDecoder().decode(value)));
+                break;
+            case REMOVE:
+                final int id = Integer.parseInt(value);
+                if (getMapOfTasks().containsKey(id)) {
+                    super.removeTaskById(id);
+                } else if (getMapOfEpics().containsKey(id)) {
+                    super.removeEpicById(id);
+                } else if (getMapOfSubtasks().containsKey(id)) {
+                    super.removeSubtaskById(id);
+                }
+                break;
+            case CLEAR:
+                switch (TaskTypes.valueOf(value)) {
+                    case TASK:
+                        super.deleteAllTasks();
+                        break;
+                    case EPIC:
+                        super.deleteAllEpics();
+                        break;
+                    case SUBTASK:
+                        super.deleteAllSubtasks();
+                }
+                break;
+            case VIEW:
+                fillHistory(value, this);
+                break;
+            default:
+                throw new ManagerSaveException("Неизвестная запись журнала: " + record);
         }
     }
 
     public String historyToString() {
         StringBuilder sb = new StringBuilder();
-        int historySize = getHistory().size();
-        for (int i = 0; i < historySize; i++) {
-            if (i == getHistory().size() - 1) {
-                sb.append(getHistory().get(i).getId());
-                continue;
+        for (Task task : getHistory()) {
+            if (sb.length() > 0) {
+                sb.append(',');
             }
-            sb.append(getHistory().get(i).getId() + ",");
+            sb.append(task.getId());
         }
         return sb.toString();
     }
 
-    // Метод для парсинга тасок из файла
-    public Task fromString(String line) {
-        String[] elem = line.split(",");
-        final int id = Integer.parseInt(elem[0]);
-        final TaskTypes type = TaskTypes.valueOf(elem[1]);
-        final String name = elem[2];
-        final TaskStatuses status = TaskStatuses.valueOf(elem[3]);
-        final String description = elem[4];
-        final String startTime = elem[5];
-        final int duration = Integer.parseInt(elem[6]);
+    /* Метод для парсинга тасок из файла. Поля читаются по позициям запятых без String.split и DateTimeFormatter,
+       т.к. при восстановлении большой доски это основная часть работы. Время при восстановлении не проверяется
+       на "раньше текущего": оно было проверено при создании задачи. */
+    public static Task fromString(String line) {
+        int start = 0;
+        int end = nextSeparator(line, start);
+        final int id = Integer.parseInt(line, start, end, 10);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final TaskTypes type = parseType(line, start, end);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final String name = line.substring(start, end);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final TaskStatuses status = parseStatus(line, start, end);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final String description = line.substring(start, end);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final LocalDateTime startTime = parseDateTime(line, start, end);
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        final long duration = Long.parseLong(line, start, end, 10);
 
         switch (type) {
             case TASK:
@@ -64,165 +489,358 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
             case EPIC:
                 return new Epic(id, name, description, status, startTime, duration);
             case SUBTASK:
-                /* Здесь для epicId оставил как было, без говорящего названия, т.к. возникает ArrayIndexOutOfBoundsException
-                при считывании TASK и EPIC, потому что у них нет такой колонки. А когда настает очередь SUBTASK все ок,
-                т.к. у него 5 элемент имеется. */
-                return new Subtask(id, name, description, status, Integer.parseInt(elem[7]), startTime, duration);
+                start = end + 1;
+                end = nextSeparator(line, start);
+                return new Subtask(id, name, description, status, Integer.parseInt(line, start, end, 10),
+                        startTime, duration);
         }
         throw new ManagerSaveException("Не удалось прочитать таску типа " + type);
     }
 
+    private static int nextSeparator(String line, int from) {
+        if (from > line.length()) {
+            throw new ManagerSaveException("Строка обрывается раньше времени: " + line);
+        }
+        int separator = line.indexOf(',', from);
+        return separator < 0 ? line.length() : separator;
+    }
+
+    private static TaskTypes parseType(String line, int start, int end) {
+        for (TaskTypes type : TASK_TYPES) {
+            if (end - start == type.name().length() && line.startsWith(type.name(), start)) {
+                return type;
+            }
+        }
+        throw new ManagerSaveException("Неизвестный тип задачи: " + line.substring(start, end));
+    }
+
+    private static TaskStatuses parseStatus(String line, int start, int end) {
+        for (TaskStatuses status : TASK_STATUSES) {
+            if (end - start == status.name().length() && line.startsWith(status.name(), start)) {
+                return status;
+            }
+        }
+        throw new ManagerSaveException("Неизвестный статус задачи: " + line.substring(start, end));
+    }
+
+    // Разбор времени в формате dd.MM.yyyy HH:mm по позициям символов
+    private static LocalDateTime parseDateTime(String line, int start, int end) {
+        if (end - start == 4 && line.startsWith("null", start)) {
+            return null;
+        }
+        if (end - start != 16) {
+            return LocalDateTime.parse(line.substring(start, end), Task.getFormatter());
+        }
+        return LocalDateTime.of(
+                Integer.parseInt(line, start + 6, start + 10, 10),
+                Integer.parseInt(line, start + 3, start + 5, 10),
+                Integer.parseInt(line, start, start + 2, 10),
+                Integer.parseInt(line, start + 11, start + 13, 10),
+                Integer.parseInt(line, start + 14, start + 16, 10));
+    }
+
     // Метод для парсинга id тасок из файла
     public static List<Integer> historyFromString(String line) {
-        return Stream.of(line.split(","))
-                .map(Integer::parseInt)
-                .collect(Collectors.toList());
+        List<Integer> ids = new ArrayList<>();
+        int start = 0;
+        while (start < line.length()) {
+            int end = nextSeparator(line, start);
+            ids.add(Integer.parseInt(line, start, end, 10));
+            start = end + 1;
+        }
+        return ids;
     }
 
     // Метод для выгрузки тасок из файла в объект менеджера
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(file);
+        return loadFromFile(file, false);
+    }
+
+    // Метод для выгрузки тасок из снимка и журнала изменений, записанного после него
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled) {
+        return loadFromFile(file, journaled, DurabilityPolicy.EVERY_OP);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled, DurabilityPolicy durability) {
+        return loadFromFile(file, journaled, durability, SnapshotFormat.CSV);
+    }
+
+    // Формат существующего снимка определяется по заголовку, format - в каком формате записывать следующие снимки
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled, DurabilityPolicy durability,
+                                                     SnapshotFormat format) {
+        return loadFromFile(file, journaled, durability, format, Task.getIdAllocator());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled, DurabilityPolicy durability,
+                                                     SnapshotFormat format, TaskIdAllocator idAllocator) {
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(file, journaled, durability,
+                DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_PENDING_OPS, format, idAllocator);
+        taskManager.restoring = true;
         try {
-            String text = Files.readString(file.toPath()); // Сохраняем текст из файла в переменную text
-            String[] lines = text.split(System.lineSeparator()); // И разбиваем текст на линии (таски)
-            for (int i = 1; i < lines.length; i++) {
-                if (lines[i].equals("")) {
-                    fillHistory(lines[i + 1], taskManager); // наполняем историю
-                    break;
-                }
-                switch (lines[i].split(",")[1]) {
-                    case "TASK":
-                        Task task = taskManager.fromString(lines[i]);
-                        taskManager.createTask(task);
-                        break;
-                    case "EPIC":
-                        Task epic = taskManager.fromString(lines[i]);
-                        taskManager.createEpic((Epic) epic);
-                        break;
-                    case "SUBTASK":
-                        Task subtask = taskManager.fromString(lines[i]);
-                        taskManager.createSubtask((Subtask) subtask);
-                }
+            // снимка может еще не быть, если все изменения пока только в журнале
+            if (file.exists() && BinarySnapshot.isBinary(file)) {
+                BinarySnapshot.decode(file, taskManager::restoreTask, taskManager::restoreView);
+            } else if (file.exists() || !taskManager.journal.getFile().exists()) {
+                taskManager.restoreSnapshot();
             }
+            taskManager.journal.replay(taskManager::applyJournalRecord); // применяем изменения после снимка
+            taskManager.historyLog.replay(id -> fillHistory(id, taskManager)); // и просмотры после снимка
             updateCounter(taskManager); // обновляем счетчик для идентификаторов тасок
         } catch (IOException | RuntimeException e) {
-            throw new ManagerSaveException("Что-то пошло не так.");
+            if (taskManager.flusher != null) {
+                taskManager.flusher.close();
+            }
+            throw new ManagerSaveException("Что-то пошло не так.", e);
+        } finally {
+            taskManager.restoring = false;
         }
         return taskManager;
     }
 
+    /* Метод для быстрого восстановления снимка: файл читается построчно, задачи сразу кладутся в таблицы
+       и приоритизированный список без проверки пересечений (снимок записан из уже проверенного состояния)
+       и без записи чего-либо на диск. */
+    private void restoreSnapshot() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(fileName.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine(); // заголовок
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    // после пустой строки идет строка истории
+                    String history = reader.readLine();
+                    if (history != null && !history.isEmpty()) {
+                        fillHistory(history, this);
+                    }
+                    break;
+                }
+                restoreTask(fromString(line));
+            }
+        }
+    }
+
     // Метод для наполнения истории из файла
     public static void fillHistory(String line, FileBackedTaskManager taskManager) {
         for (Integer id : historyFromString(line)) {
-            if (taskManager.getMapOfTasks().containsKey(id)) {
-                taskManager.getTaskById(id);
-            } else if (taskManager.getMapOfEpics().containsKey(id)) {
-                taskManager.getEpicById(id);
-            } else {
-                taskManager.getSubtaskById(id);
-            }
+            taskManager.restoreView(id);
+        }
+    }
+
+    private void restoreView(int id) {
+        if (getMapOfTasks().containsKey(id)) {
+            getTaskById(id);
+        } else if (getMapOfEpics().containsKey(id)) {
+            getEpicById(id);
+        } else {
+            getSubtaskById(id);
         }
     }
 
-    // Метод для обновления счетчика id тасок после выгрузки тасок из файла
-    public static void updateCounter(FileBackedTaskManager taskManager) {
-        List<Integer> ids = new ArrayList<>(taskManager.getMapOfTasks().keySet());
-        ids.addAll(taskManager.getMapOfEpics().keySet());
-        ids.addAll(taskManager.getMapOfSubtasks().keySet());
-        Task.setCountTaskId(Collections.max(ids));
+    /* Метод для обновления счетчика id тасок после выгрузки тасок из файла. Максимальный id считается по ходу
+       восстановления, а граница из файла id не дает повторно выдать id удаленных задач. */
+    public static void updateCounter(FileBackedTaskManager taskManager) throws IOException {
+        if (taskManager.getMapOfTasks().isEmpty() && taskManager.getMapOfEpics().isEmpty()
+                && taskManager.getMapOfSubtasks().isEmpty()) {
+            throw new ManagerSaveException("В файле нет задач");
+        }
+        taskManager.reservedIds = Math.max(taskManager.restoredMaxId, readReservedIds(taskManager.fileName));
+        taskManager.issuedIds = taskManager.reservedIds;
+        taskManager.getIdAllocator().advanceTo(taskManager.reservedIds);
+    }
+
+    @Override
+    protected void restoreTask(Task task) {
+        super.restoreTask(task);
+        restoredMaxId = Math.max(restoredMaxId, task.getId());
     }
 
-    // Ниже группа переопределённых методов класса родителя с добавлением метода сохранения тасок в файл
+    // Ниже группа переопределённых методов класса родителя с добавлением фиксации изменений в файле
     @Override
     public void createTask(Task task) {
-        super.createTask(task);
-        save();
+        mutate(() -> {
+            reserveIds(task.getId());
+            super.createTask(task);
+            return records(upsertRecord(task));
+        });
     }
 
     @Override
     public void createEpic(Epic epic) {
-        super.createEpic(epic);
-        save();
+        mutate(() -> {
+            reserveIds(epic.getId());
+            super.createEpic(epic);
+            return records(upsertRecord(epic));
+        });
     }
 
     @Override
     public void createSubtask(Subtask subtask) {
-        super.createSubtask(subtask);
-        save();
+        mutate(() -> {
+            reserveIds(subtask.getId());
+            super.createSubtask(subtask);
+            return subtaskRecords(upsertRecord(subtask), subtask.getEpicId());
+        });
     }
 
     @Override
     public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+        mutate(() -> {
+            super.updateTask(task);
+            return records(upsertRecord(task));
+        });
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+        mutate(() -> {
+            super.updateEpic(epic);
+            return records(upsertRecord(epic));
+        });
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+        mutate(() -> {
+            final Subtask oldSubtask = subtask == null ? null : getMapOfSubtasks().get(subtask.getId());
+            super.updateSubtask(subtask);
+            if (oldSubtask != null && oldSubtask.getEpicId() != subtask.getEpicId()) {
+                return subtaskRecords(upsertRecord(subtask), subtask.getEpicId(), oldSubtask.getEpicId());
+            }
+            return subtaskRecords(upsertRecord(subtask), subtask.getEpicId());
+        });
     }
 
     @Override
     public Task getTaskById(int id) {
-        Task task = super.getTaskById(id);
-        save();
-        return task;
+        return view(() -> super.getTaskById(id));
     }
 
     @Override
     public Epic getEpicById(int id) {
-        Epic epic = super.getEpicById(id);
-        save();
-        return epic;
+        return view(() -> super.getEpicById(id));
     }
 
     @Override
     public Subtask getSubtaskById(int id) {
-        Subtask subtask = super.getSubtaskById(id);
-        save();
-        return subtask;
+        return view(() -> super.getSubtaskById(id));
     }
 
     @Override
     public void removeTaskById(int taskId) {
-        super.removeTaskById(taskId);
-        save();
+        mutate(() -> {
+            super.removeTaskById(taskId);
+            return records(removeRecord(taskId));
+        });
     }
 
     @Override
     public void removeEpicById(int epicId) {
-        super.removeEpicById(epicId);
-        save();
+        mutate(() -> {
+            super.removeEpicById(epicId);
+            return records(removeRecord(epicId)); // подзадачи эпика удаляются вместе с ним и при восстановлении
+        });
     }
 
     @Override
     public void removeSubtaskById(int subtaskId) {
-        super.removeSubtaskById(subtaskId);
-        save();
+        mutate(() -> {
+            final Subtask subtask = getMapOfSubtasks().get(subtaskId);
+            super.removeSubtaskById(subtaskId);
+            return subtaskRecords(removeRecord(subtaskId), subtask.getEpicId());
+        });
+    }
+
+    // Пакет применяется под одной блокировкой и записывается на диск одной записью (одним снимком или журналом)
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        mutate(() -> {
+            int maxId = 0;
+            for (Task task : tasks) {
+                maxId = Math.max(maxId, task == null ? 0 : task.getId());
+            }
+            reserveIds(maxId);
+            super.createAll(tasks);
+            return batchRecords(tasks, Collections.emptySet());
+        });
+    }
+
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        mutate(() -> {
+            Set<Integer> oldEpicIds = new HashSet<>();
+            for (Task task : tasks) {
+                final Subtask oldSubtask = task == null ? null : getMapOfSubtasks().get(task.getId());
+                if (oldSubtask != null) {
+                    oldEpicIds.add(oldSubtask.getEpicId());
+                }
+            }
+            super.updateAll(tasks);
+            return batchRecords(tasks, oldEpicIds);
+        });
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        mutate(() -> {
+            Set<Integer> epicIds = new HashSet<>();
+            for (Integer id : ids) {
+                final Subtask subtask = id == null ? null : getMapOfSubtasks().get(id);
+                if (subtask != null) {
+                    epicIds.add(subtask.getEpicId());
+                }
+            }
+            super.removeAll(ids);
+            List<String> records = new ArrayList<>();
+            for (Integer id : ids) {
+                records.add(removeRecord(id));
+            }
+            addEpicRecords(records, epicIds);
+            return records.toArray(new String[0]);
+        });
+    }
+
+    // Записи о задачах пакета, затем по одной записи о каждом эпике с пересчитанными статусом и временем
+    private String[] batchRecords(List<? extends Task> tasks, Set<Integer> epicIds) {
+        List<String> records = new ArrayList<>(tasks.size() + epicIds.size());
+        Set<Integer> changedEpicIds = new HashSet<>(epicIds);
+        for (Task task : tasks) {
+            records.add(upsertRecord(task));
+            if (task instanceof Subtask) {
+                changedEpicIds.add(((Subtask) task).getEpicId());
+            }
+        }
+        addEpicRecords(records, changedEpicIds);
+        return records.toArray(new String[0]);
+    }
+
+    private void addEpicRecords(List<String> records, Set<Integer> epicIds) {
+        for (int epicId : epicIds) {
+            Epic epic = getMapOfEpics().get(epicId);
+            if (epic != null) {
+                records.add(upsertRecord(epic));
+            }
+        }
     }
 
     @Override
     public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+        mutate(() -> {
+            super.deleteAllTasks();
+            return records(clearRecord(TaskTypes.TASK));
+        });
     }
 
     @Override
     public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
+        mutate(() -> {
+            super.deleteAllEpics();
+            return records(clearRecord(TaskTypes.EPIC));
+        });
     }
 
     @Override
     public void deleteAllSubtasks() {
-        super.deleteAllSubtasks();
-        save();
+        mutate(() -> {
+            super.deleteAllSubtasks();
+            return records(clearRecord(TaskTypes.SUBTASK));
+        });
     }
 }
@@ -2,77 +2,216 @@ package tasktracker.taskmanager;
 
 import tasktracker.exceptions.NonExistentTaskException;
 import tasktracker.exceptions.TaskTimeValidationException;
+import tasktracker.collections.IntObjectMap;
+import tasktracker.collections.SortedIntSet;
 import tasktracker.historymanager.HistoryManager;
 import tasktracker.managers.Managers;
 import tasktracker.tasks.Epic;
 import tasktracker.tasks.Subtask;
 import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskIdAllocator;
+import tasktracker.tasks.TaskTypes;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class InMemoryTaskManager implements TaskManager {
 
     // Хранение каждого типа задачи в отдельной коллекции
-    private final HashMap<Integer, Task> mapOfTasks = new HashMap<>();
-    private final HashMap<Integer, Epic> mapOfEpics = new HashMap<>();
-    private final HashMap<Integer, Subtask> mapOfSubtasks = new HashMap<>();
+    private final IntObjectMap<Task> mapOfTasks = new IntObjectMap<>();
+    private final IntObjectMap<Epic> mapOfEpics = new IntObjectMap<>();
+    private final IntObjectMap<Subtask> mapOfSubtasks = new IntObjectMap<>();
+
+    // Отсортированные id каждого типа для постраничной выдачи без копирования всей коллекции
+    private final SortedIntSet sortedTaskIds = new SortedIntSet();
+    private final SortedIntSet sortedEpicIds = new SortedIntSet();
+    private final SortedIntSet sortedSubtaskIds = new SortedIntSet();
+    /* Подзадачи, удаленные вместе с эпиком, из sortedSubtaskIds сразу не убираются (сдвиг массива стоил бы
+       O(всех подзадач) на каждую): страницы их пропускают, а массив сжимается, когда таких id становится много. */
+    private int staleSubtaskIds;
+
+    // id подзадач каждого эпика: удаление эпика и перенос подзадачи не обходят все подзадачи доски
+    private final IntObjectMap<SortedIntSet> subtaskIdsByEpic = new IntObjectMap<>();
+
+    /* Версии коллекций для условных запросов: при каждом изменении коллекция получает следующее значение
+       общего счетчика. Версия эпика меняется и при изменении его подзадач (статус и время эпика зависят от них). */
+    private long versionClock;
+    private long tasksVersion;
+    private long epicsVersion;
+    private long subtasksVersion;
+    private long historyVersion;
+    private final HashMap<Integer, Long> epicVersions = new HashMap<>();
+    private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
 
     // Хранение истории просмотра задач
-    private final HistoryManager history = Managers.getDefaultHistory();
+    private final HistoryManager history;
+
+    // Счетчик id менеджера (generateId); у менеджеров без своего счетчика - общий Task.getIdAllocator()
+    private final TaskIdAllocator idAllocator;
 
     // Приоритизированный список задач
     private final Set<Task> prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime,
             Comparator.nullsLast(Comparator.naturalOrder())).thenComparingInt(Task::getId));
 
+    // Индекс интервалов времени задач для быстрой проверки пересечений
+    private final TaskIntervalIndex intervalIndex = new TaskIntervalIndex();
+
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    // Менеджер с заданной историей просмотров (например, другого размера)
+    public InMemoryTaskManager(HistoryManager history) {
+        this(history, Task.getIdAllocator());
+    }
+
+    /* Менеджер со своим счетчиком id: другие менеджеры процесса и Task.setCountTaskId его не сдвигают.
+       id новых задач такого менеджера берутся из generateId (конструкторы Task без id расходуют общий счетчик). */
+    public InMemoryTaskManager(TaskIdAllocator idAllocator) {
+        this(Managers.getDefaultHistory(), idAllocator);
+    }
+
+    public InMemoryTaskManager(HistoryManager history, TaskIdAllocator idAllocator) {
+        this.history = history;
+        this.idAllocator = idAllocator;
+    }
+
+    protected TaskIdAllocator getIdAllocator() {
+        return idAllocator;
+    }
+
     @Override
     public Set<Task> getPrioritizedTasks() {
         return prioritizedTasks;
     }
 
     public void taskTimeValidation(Task task) {
-        for (Task prioritizedTask : prioritizedTasks) {
-            if (prioritizedTask.getStartTime() == null || task.getStartTime() == null) {
-                break;
-            }
-            if (task.getId() == prioritizedTask.getId()) {
-                continue;
-            }
-            if (prioritizedTask.getEndTime().isAfter(task.getStartTime())
-                    && task.getEndTime().isAfter(prioritizedTask.getStartTime())) {
-                throw new TaskTimeValidationException("Задача с таким временем старта уже существует. " +
-                        "Проигнорированная задача - ", task);
-            }
+        if (task.getStartTime() == null) {
+            return;
+        }
+        // сама задача (при обновлении) не считается пересечением
+        if (intervalIndex.hasOverlap(task.getStartTime(), task.getEndTime(), task.getId())) {
+            throw new TaskTimeValidationException("Задача с таким временем старта уже существует. " +
+                    "Проигнорированная задача - ", task);
         }
     }
 
+    // Методы для синхронного изменения приоритизированного списка и индекса интервалов
+    private void addPrioritized(Task task) {
+        prioritizedTasks.add(task);
+        intervalIndex.add(task);
+    }
+
+    private void removePrioritized(Task task) {
+        if (task == null) {
+            return;
+        }
+        prioritizedTasks.remove(task);
+        intervalIndex.remove(task.getId());
+    }
+
     // Методы для помещения созданной задачи в коллекцию своего типа
     @Override
     public void createTask(Task task) {
         taskTimeValidation(task); // насколько я понял, ты хотел, чтобы таска с одинаковым временем не добавлялась и в мапу?)
-        mapOfTasks.put(task.getId(), task);
-        prioritizedTasks.add(task);
+        putTask(task);
     }
 
     @Override
     public void createEpic(Epic epic) {
-        mapOfEpics.put(epic.getId(), epic);
+        putEpic(epic);
     }
 
     @Override
     public void createSubtask(Subtask subtask) {
         taskTimeValidation(subtask);
+        putSubtask(subtask);
+    }
+
+    // Методы, изменяющие коллекции без проверок (проверки выполняют публичные методы, для пакетов - до изменений)
+    private void putTask(Task task) {
+        mapOfTasks.put(task.getId(), task);
+        sortedTaskIds.add(task.getId());
+        addPrioritized(task);
+        tasksChanged();
+    }
+
+    private void putEpic(Epic epic) {
+        mapOfEpics.put(epic.getId(), epic);
+        sortedEpicIds.add(epic.getId());
+        epicChanged(epic.getId());
+    }
+
+    private void putSubtask(Subtask subtask) {
         mapOfSubtasks.put(subtask.getId(), subtask);
-        prioritizedTasks.add(subtask);
+        sortedSubtaskIds.add(subtask.getId());
+        indexSubtask(subtask.getEpicId(), subtask.getId());
+        addPrioritized(subtask);
+        subtasksChanged(subtask.getEpicId());
+    }
+
+    private void indexSubtask(int epicId, int subtaskId) {
+        SortedIntSet subtaskIds = subtaskIdsByEpic.get(epicId);
+        if (subtaskIds == null) {
+            subtaskIds = new SortedIntSet();
+            subtaskIdsByEpic.put(epicId, subtaskIds);
+        }
+        subtaskIds.add(subtaskId);
+    }
+
+    private void unindexSubtask(int epicId, int subtaskId) {
+        SortedIntSet subtaskIds = subtaskIdsByEpic.get(epicId);
+        if (subtaskIds != null && subtaskIds.remove(subtaskId) && subtaskIds.isEmpty()) {
+            subtaskIdsByEpic.remove(epicId);
+        }
+    }
+
+    // Метод для восстановления задачи любого типа (из файла или журнала): без проверки времени и пересчета эпиков
+    protected void restoreTask(Task task) {
+        switch (task.getType()) {
+            case TASK:
+                removePrioritized(mapOfTasks.put(task.getId(), task));
+                sortedTaskIds.add(task.getId());
+                addPrioritized(task);
+                tasksChanged();
+                break;
+            case EPIC:
+                mapOfEpics.put(task.getId(), (Epic) task);
+                sortedEpicIds.add(task.getId());
+                epicChanged(task.getId());
+                break;
+            case SUBTASK:
+                final Subtask oldSubtask = mapOfSubtasks.put(task.getId(), (Subtask) task);
+                removePrioritized(oldSubtask);
+                if (oldSubtask != null) {
+                    unindexSubtask(oldSubtask.getEpicId(), task.getId());
+                }
+                sortedSubtaskIds.add(task.getId());
+                indexSubtask(((Subtask) task).getEpicId(), task.getId());
+                addPrioritized(task);
+                subtasksChanged(((Subtask) task).getEpicId());
+        }
+    }
+
+    /* Просмотр меняет только историю. ConcurrentTaskManager выполняет просмотры параллельно под блокировкой
+       чтения, поэтому дописывание истории и ее версия защищены монитором истории, а поиск задачи - нет. */
+    private <T extends Task> T view(T task) {
+        synchronized (history) {
+            history.addToHistory(task);
+            historyVersion = ++versionClock;
+        }
+        return task;
     }
 
     // Методы для получения задачи по ее идентификатору из соответствующей коллекции
     @Override
     public Task getTaskById(int id) {
         if (mapOfTasks.containsKey(id)) {
-            history.addToHistory(mapOfTasks.get(id));
-            return mapOfTasks.get(id);
+            return view(mapOfTasks.get(id));
         } else {
             System.out.println("Задачи с таким идентификатором не существует");
             return null;
@@ -82,8 +221,7 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Epic getEpicById(int id) {
         if (mapOfEpics.containsKey(id)) {
-            history.addToHistory(mapOfEpics.get(id));
-            return mapOfEpics.get(id);
+            return view(mapOfEpics.get(id));
         } else {
             System.out.println("Эпика с таким идентификатором не существует");
             return null;
@@ -93,43 +231,111 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Subtask getSubtaskById(int id) {
         if (mapOfSubtasks.containsKey(id)) {
-            history.addToHistory(mapOfSubtasks.get(id));
-            return mapOfSubtasks.get(id);
+            return view(mapOfSubtasks.get(id));
         } else {
             System.out.println("Подзадачи с таким идентификатором не существует");
             return null;
         }
     }
 
-    // Методы для получения списка всех задач из соответствующей коллекции
+    // Методы для получения списка всех задач из соответствующей коллекции (по возрастанию id, как и страницы)
     @Override
     public ArrayList<Task> getListAllTasks() {
-        return new ArrayList<>(mapOfTasks.values());
+        return page(sortedTaskIds, mapOfTasks, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     @Override
     public ArrayList<Epic> getListAllEpics() {
-        return new ArrayList<>(mapOfEpics.values());
+        return page(sortedEpicIds, mapOfEpics, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     @Override
     public ArrayList<Subtask> getListAllSubtasks() {
-        return new ArrayList<>(mapOfSubtasks.values());
+        return page(sortedSubtaskIds, mapOfSubtasks, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    // Методы постраничной выдачи: не больше limit задач с id больше afterId, по возрастанию id
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return page(sortedTaskIds, mapOfTasks, afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return page(sortedEpicIds, mapOfEpics, afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return page(sortedSubtaskIds, mapOfSubtasks, afterId, limit);
+    }
+
+    private static <T extends Task> ArrayList<T> page(SortedIntSet ids, IntObjectMap<T> map, int afterId, int limit) {
+        int index = ids.indexAfter(afterId);
+        ArrayList<T> page = new ArrayList<>(Math.min(limit, ids.size() - index));
+        for (; index < ids.size() && page.size() < limit; index++) {
+            final T task = map.get(ids.get(index));
+            if (task != null) { // id подзадачи удаленного эпика, еще не убранный из ids
+                page.add(task);
+            }
+        }
+        return page;
+    }
+
+    // Задачи всех типов одной страницей: слияние трех отсортированных наборов id
+    @Override
+    public List<Task> getAllTasksAllTypesPage(int afterId, int limit) {
+        int t = sortedTaskIds.indexAfter(afterId);
+        int e = sortedEpicIds.indexAfter(afterId);
+        int s = sortedSubtaskIds.indexAfter(afterId);
+        final int total = sortedTaskIds.size() + sortedEpicIds.size() + sortedSubtaskIds.size();
+        List<Task> page = new ArrayList<>(Math.min(limit, total));
+        while (page.size() < limit) {
+            final int taskId = t < sortedTaskIds.size() ? sortedTaskIds.get(t) : Integer.MAX_VALUE;
+            final int epicId = e < sortedEpicIds.size() ? sortedEpicIds.get(e) : Integer.MAX_VALUE;
+            final int subtaskId = s < sortedSubtaskIds.size() ? sortedSubtaskIds.get(s) : Integer.MAX_VALUE;
+            if (taskId <= epicId && taskId <= subtaskId && taskId != Integer.MAX_VALUE) {
+                page.add(mapOfTasks.get(taskId));
+                t++;
+            } else if (epicId <= subtaskId && epicId != Integer.MAX_VALUE) {
+                page.add(mapOfEpics.get(epicId));
+                e++;
+            } else if (subtaskId != Integer.MAX_VALUE) {
+                final Subtask subtask = mapOfSubtasks.get(subtaskId);
+                if (subtask != null) {
+                    page.add(subtask);
+                }
+                s++;
+            } else {
+                break;
+            }
+        }
+        return page;
     }
 
     // Геттеры для мап тасок всех типов
-    protected HashMap<Integer, Task> getMapOfTasks() {
+    protected IntObjectMap<Task> getMapOfTasks() {
         return mapOfTasks;
     }
 
-    protected HashMap<Integer, Epic> getMapOfEpics() {
+    protected IntObjectMap<Epic> getMapOfEpics() {
         return mapOfEpics;
     }
 
-    protected HashMap<Integer, Subtask> getMapOfSubtasks() {
+    protected IntObjectMap<Subtask> getMapOfSubtasks() {
         return mapOfSubtasks;
     }
 
+    // id подзадач эпика по возрастанию (по индексу, он заполняется и при восстановлении)
+    protected int[] getSubtaskIds(int epicId) {
+        final SortedIntSet ids = subtaskIdsByEpic.get(epicId);
+        final int[] result = new int[ids == null ? 0 : ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
     // Методы для обновления задач соответствующей коллекции
     @Override
     public void updateTask(Task task) {
@@ -142,10 +348,15 @@ public class InMemoryTaskManager implements TaskManager {
             throw new NonExistentTaskException("Задачи с таким идентификатором не существует");
         }
 
-        prioritizedTasks.remove(oldTask);
-        taskTimeValidation(task);
+        taskTimeValidation(task); // проверяем до изменений, чтобы при ошибке старая задача осталась на месте
+        replaceTask(oldTask, task);
+    }
+
+    private void replaceTask(Task oldTask, Task task) {
+        removePrioritized(oldTask);
         mapOfTasks.put(task.getId(), task);
-        prioritizedTasks.add(task);
+        addPrioritized(task);
+        tasksChanged();
     }
 
     @Override
@@ -153,7 +364,7 @@ public class InMemoryTaskManager implements TaskManager {
         if (epic == null) {
             throw new NonExistentTaskException("Подзадачи с таким идентификатором не существует");
         }
-        mapOfEpics.put(epic.getId(), epic);
+        putEpic(epic);
     }
 
     @Override
@@ -162,85 +373,267 @@ public class InMemoryTaskManager implements TaskManager {
             throw new NonExistentTaskException("Подзадачи с таким идентификатором не существует");
         }
 
+        taskTimeValidation(subtask); // проверяем до изменений эпиков и списков
+        replaceSubtask(subtask);
+    }
+
+    private void replaceSubtask(Subtask subtask) {
         int oldEpicId = mapOfSubtasks.get(subtask.getId()).getEpicId(); // получаем и сохраняем старый эпик
         boolean isNewEpic = subtask.getEpicId() != oldEpicId; // проверка на новый эпик
         if (isNewEpic) {
             mapOfEpics.get(oldEpicId).deleteSubtask(subtask.getId()); // удаление подзадачи из старого эпика
+            unindexSubtask(oldEpicId, subtask.getId());
+            indexSubtask(subtask.getEpicId(), subtask.getId());
+            epicChanged(oldEpicId);
         }
         mapOfEpics.get(subtask.getEpicId()).addSubtask(subtask); // обновляем подзадачу в ее эпике и пересчитываем статус
+        subtasksChanged(subtask.getEpicId());
 
         Subtask oldSubtask = mapOfSubtasks.get(subtask.getId());
         if (oldSubtask == null) {
             return;
         }
 
-        prioritizedTasks.remove(oldSubtask);
-        taskTimeValidation(subtask);
+        removePrioritized(oldSubtask);
         mapOfSubtasks.put(subtask.getId(), subtask);
-        prioritizedTasks.add(subtask);
+        addPrioritized(subtask);
     }
 
     // Методы для удаления задачи по идентификатору соответствующей коллекции
     @Override
     public void removeTaskById(int taskId) {
         if (mapOfTasks.containsKey(taskId)) {
-            history.remove(taskId); // удаляем задачу из истории
-            prioritizedTasks.remove(mapOfTasks.get(taskId));
-            mapOfTasks.remove(taskId); // удаляем саму задачу
+            dropTask(taskId);
         } else {
             throw new NonExistentTaskException("Задачи с таким идентификатором не существует");
         }
     }
 
+    private void dropTask(int taskId) {
+        history.remove(taskId); // удаляем задачу из истории
+        removePrioritized(mapOfTasks.get(taskId));
+        mapOfTasks.remove(taskId); // удаляем саму задачу
+        sortedTaskIds.remove(taskId);
+        tasksChanged();
+        historyVersion = ++versionClock;
+    }
+
     @Override
     public void removeEpicById(int epicId) {
         if (mapOfEpics.containsKey(epicId)) {
-            history.remove(epicId);
-            mapOfEpics.remove(epicId); // удаляем сам эпик из таблицы эпиков
-
-            // удаляем подзадачи связанные с этим эпиком со списка подзадач
-            ArrayList<Integer> subtaskIds = new ArrayList<>(); // отдельный список для id подзадач удаленного эпика
-            for (Subtask value : mapOfSubtasks.values()) {
-                if (value.getEpicId() == epicId) {
-                    subtaskIds.add(value.getId());
-                }
-            }
+            dropEpic(epicId);
+        } else {
+            throw new NonExistentTaskException("Эпика с таким идентификатором не существует");
+        }
+    }
+
+    private void dropEpic(int epicId) {
+        history.remove(epicId);
+        mapOfEpics.remove(epicId); // удаляем сам эпик из таблицы эпиков
+        sortedEpicIds.remove(epicId);
 
-            for (Integer subtaskId : subtaskIds) {
+        // удаляем подзадачи этого эпика: их id берутся из индекса, остальные подзадачи доски не обходятся
+        SortedIntSet subtaskIds = subtaskIdsByEpic.remove(epicId);
+        if (subtaskIds != null) {
+            for (int i = 0; i < subtaskIds.size(); i++) {
+                final int subtaskId = subtaskIds.get(i);
                 history.remove(subtaskId); // удаляем подзадачи из истории
-                prioritizedTasks.remove(mapOfSubtasks.get(subtaskId));
-                mapOfSubtasks.remove(subtaskId); // проходимся по списку подзадач и удаляем собранные id на строке 107
+                removePrioritized(mapOfSubtasks.remove(subtaskId));
+            }
+            staleSubtaskIds += subtaskIds.size();
+            if (staleSubtaskIds > sortedSubtaskIds.size() / 2) {
+                sortedSubtaskIds.removeIf(id -> !mapOfSubtasks.containsKey(id));
+                staleSubtaskIds = 0;
             }
-            /* Примечание: эти приседания с дополнительным списком ArrayList<Integer> subtaskIds для id подзадач
-            * удаленного эпика сделаны, чтобы избежать ошибки ConcurrentModificationException, которая возникает когда
-            * я сразу пытаюсь использовать на 107 строке конструкцию mapOfSubtasks.remove(value.getId()); */
-        } else {
-            throw new NonExistentTaskException("Эпика с таким идентификатором не существует");
         }
+        epicsVersion = subtasksVersion = historyVersion = ++versionClock;
+        epicVersions.remove(epicId);
+        fireChange(TaskTypes.EPIC, epicId);
+        fireChange(TaskTypes.SUBTASK, epicId);
     }
 
     @Override
     public void removeSubtaskById(int subtaskId) {
         if (mapOfSubtasks.containsKey(subtaskId)) {
-            int epicId = mapOfSubtasks.get(subtaskId).getEpicId(); // получаем id эпика, в котором содержится подзадача
-            mapOfEpics.get(epicId).deleteSubtask(subtaskId); // удаляем эту подзадачу в ее эпике и пересчитываем статус эпика
-            prioritizedTasks.remove(mapOfSubtasks.get(subtaskId));
-            mapOfSubtasks.remove(subtaskId); // удаляем саму подзадачу
-            history.remove(subtaskId); // удаляем подзадачу из истории
+            dropSubtask(subtaskId);
         } else {
             throw new NonExistentTaskException("Эпика с таким идентификатором не существует");
         }
     }
 
+    private void dropSubtask(int subtaskId) {
+        int epicId = mapOfSubtasks.get(subtaskId).getEpicId(); // получаем id эпика, в котором содержится подзадача
+        mapOfEpics.get(epicId).deleteSubtask(subtaskId); // удаляем эту подзадачу в ее эпике и пересчитываем статус эпика
+        removePrioritized(mapOfSubtasks.get(subtaskId));
+        mapOfSubtasks.remove(subtaskId); // удаляем саму подзадачу
+        sortedSubtaskIds.remove(subtaskId);
+        unindexSubtask(epicId, subtaskId);
+        history.remove(subtaskId); // удаляем подзадачу из истории
+        subtasksChanged(epicId);
+        historyVersion = ++versionClock;
+    }
+
+    // Пакетные операции: сначала проверяется весь пакет, затем он применяется без проверок
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        Set<Integer> batchIds = new HashSet<>();
+        Set<Integer> batchEpicIds = new HashSet<>();
+        for (Task task : tasks) {
+            if (task == null) {
+                throw new NonExistentTaskException("В пакете есть пустая задача");
+            }
+            if (!batchIds.add(task.getId()) || mapOfTasks.containsKey(task.getId())
+                    || mapOfEpics.containsKey(task.getId()) || mapOfSubtasks.containsKey(task.getId())) {
+                throw new IllegalArgumentException("Задача с id " + task.getId() + " уже существует");
+            }
+            if (task instanceof Epic) {
+                batchEpicIds.add(task.getId());
+            } else if (task instanceof Subtask) {
+                final int epicId = ((Subtask) task).getEpicId();
+                if (!mapOfEpics.containsKey(epicId) && !batchEpicIds.contains(epicId)) {
+                    throw new NonExistentTaskException("Эпика с id " + epicId + " не существует");
+                }
+            }
+        }
+        batchTimeValidation(tasks, Collections.emptySet());
+
+        for (Task task : tasks) {
+            switch (task.getType()) {
+                case TASK:
+                    putTask(task);
+                    break;
+                case EPIC:
+                    putEpic((Epic) task);
+                    break;
+                case SUBTASK:
+                    final Subtask subtask = (Subtask) task;
+                    putSubtask(subtask);
+                    // подзадача, пришедшая не через конструктор с эпиком (например, из JSON), добавляется в эпик
+                    final Epic epic = mapOfEpics.get(subtask.getEpicId());
+                    if (!epic.getEpicSubtasks().containsKey(subtask.getId())) {
+                        epic.addSubtask(subtask);
+                    }
+            }
+        }
+    }
+
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        Set<Integer> batchIds = new HashSet<>();
+        for (Task task : tasks) {
+            if (task == null || !currentOfSameType(task)) {
+                throw new NonExistentTaskException("Задачи с id " + (task == null ? null : task.getId())
+                        + " не существует");
+            }
+            if (!batchIds.add(task.getId())) {
+                throw new IllegalArgumentException("Задача с id " + task.getId() + " встречается в пакете дважды");
+            }
+            if (task instanceof Subtask && !mapOfEpics.containsKey(((Subtask) task).getEpicId())) {
+                throw new NonExistentTaskException("Эпика с id " + ((Subtask) task).getEpicId() + " не существует");
+            }
+        }
+        final List<TaskIntervalIndex.Interval> replaced = batchTimeValidation(tasks, batchIds);
+
+        /* После проверки пакет применяется по одной задаче и атомарным уже не является: если замена или подписчик
+           бросит исключение, примененные задачи остаются, а остальным возвращаются их старые интервалы */
+        Set<Integer> applied = new HashSet<>();
+        try {
+            for (Task task : tasks) {
+                switch (task.getType()) {
+                    case TASK:
+                        replaceTask(mapOfTasks.get(task.getId()), task);
+                        break;
+                    case EPIC:
+                        putEpic((Epic) task);
+                        break;
+                    case SUBTASK:
+                        replaceSubtask((Subtask) task);
+                }
+                applied.add(task.getId());
+            }
+        } catch (RuntimeException e) {
+            intervalIndex.restore(replaced, id -> !applied.contains(id));
+            throw e;
+        }
+    }
+
+    // Подзадачи удаляемых эпиков удаляются вместе с эпиком, повторно их удалять не нужно
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        for (Integer id : ids) {
+            if (id == null || !(mapOfTasks.containsKey(id) || mapOfEpics.containsKey(id)
+                    || mapOfSubtasks.containsKey(id))) {
+                throw new NonExistentTaskException("Задачи с id " + id + " не существует");
+            }
+        }
+        for (Integer id : ids) {
+            if (mapOfTasks.containsKey(id)) {
+                dropTask(id);
+            } else if (mapOfEpics.containsKey(id)) {
+                dropEpic(id);
+            } else if (mapOfSubtasks.containsKey(id)) {
+                dropSubtask(id);
+            }
+        }
+    }
+
+    private boolean currentOfSameType(Task task) {
+        switch (task.getType()) {
+            case TASK:
+                return mapOfTasks.containsKey(task.getId());
+            case EPIC:
+                return mapOfEpics.containsKey(task.getId());
+            default:
+                return mapOfSubtasks.containsKey(task.getId());
+        }
+    }
+
+    /* Проверка времени всего пакета одним проходом: задачи пакета сортируются по началу, и каждая сравнивается
+       с наибольшим концом предыдущих (пересечения внутри пакета) и с индексом (пересечения с остальной доской).
+       replacedIds - задачи, старые интервалы которых пакет заменяет: они убираются из индекса до проверки, поэтому
+       каждая задача проверяется одним поиском в индексе. При ошибке они возвращаются, при успехе индекс получит
+       новые интервалы этих задач, когда пакет будет применен; убранные интервалы возвращаются вызывающему. */
+    private List<TaskIntervalIndex.Interval> batchTimeValidation(List<? extends Task> tasks,
+                                                                 Collection<Integer> replacedIds) {
+        List<Task> timed = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task.getType() != TaskTypes.EPIC && task.getStartTime() != null) {
+                timed.add(task);
+            }
+        }
+        timed.sort(Comparator.comparing(Task::getStartTime));
+        final List<TaskIntervalIndex.Interval> replaced = intervalIndex.detach(replacedIds);
+        LocalDateTime maxEnd = null;
+        for (Task task : timed) {
+            if ((maxEnd != null && task.getStartTime().isBefore(maxEnd))
+                    || intervalIndex.hasOverlap(task.getStartTime(), task.getEndTime())) {
+                intervalIndex.restore(replaced);
+                throw new TaskTimeValidationException("Задача с таким временем старта уже существует. " +
+                        "Проигнорированная задача - ", task);
+            }
+            if (maxEnd == null || task.getEndTime().isAfter(maxEnd)) {
+                maxEnd = task.getEndTime();
+            }
+        }
+        return replaced;
+    }
+
+    // Удаляет из приоритизированного списка и индекса все задачи одного типа за один проход
+    private void removeAllPrioritized(TaskTypes type, IntPredicate ids) {
+        prioritizedTasks.removeIf(task -> task.getType() == type);
+        intervalIndex.removeIf(ids);
+    }
+
     // Методы для удаления всех задач в соответствующей коллекции
     @Override
     public void deleteAllTasks() {
         // удаляем все таски из истории
-        for (Integer taskId : mapOfTasks.keySet()) {
-            history.remove(taskId);
-            prioritizedTasks.remove(mapOfTasks.get(taskId));
-        }
+        mapOfTasks.forEachEntry((taskId, task) -> history.remove(taskId));
+        removeAllPrioritized(TaskTypes.TASK, mapOfTasks::containsKey);
         mapOfTasks.clear();
+        sortedTaskIds.clear();
+        tasksVersion = historyVersion = ++versionClock;
+        fireChange(TaskTypes.TASK, 0);
     }
 
     @Override
@@ -249,46 +642,134 @@ public class InMemoryTaskManager implements TaskManager {
         for (Subtask subtask : mapOfSubtasks.values()) {
             history.remove(subtask.getEpicId());
             history.remove(subtask.getId());
-            prioritizedTasks.remove(subtask);
         }
+        removeAllPrioritized(TaskTypes.SUBTASK, mapOfSubtasks::containsKey);
         mapOfEpics.clear();
         mapOfSubtasks.clear();
+        sortedEpicIds.clear();
+        sortedSubtaskIds.clear();
+        staleSubtaskIds = 0;
+        subtaskIdsByEpic.clear();
+        epicsVersion = subtasksVersion = historyVersion = ++versionClock;
+        epicVersions.clear();
+        fireChange(TaskTypes.EPIC, 0);
+        fireChange(TaskTypes.SUBTASK, 0);
     }
 
     @Override
     public void deleteAllSubtasks() {
         // удаляем все сабтаски из истории
-        for (Integer subtaskId : mapOfSubtasks.keySet()) {
-            history.remove(subtaskId);
-            prioritizedTasks.remove(mapOfSubtasks.get(subtaskId));
-        }
+        mapOfSubtasks.forEachEntry((subtaskId, subtask) -> history.remove(subtaskId));
+        removeAllPrioritized(TaskTypes.SUBTASK, mapOfSubtasks::containsKey);
         mapOfSubtasks.clear(); // очищаем сам список сабтасок
-        // также очищаем подзадачи в эпиках
+        sortedSubtaskIds.clear();
+        staleSubtaskIds = 0;
+        subtaskIdsByEpic.clear();
+        // также очищаем подзадачи в эпиках (через эпик, чтобы сбросились его накопленные значения и время)
         for (Epic epic : mapOfEpics.values()) {
-            epic.getEpicSubtasks().clear();
+            epic.clearSubtask();
         }
+        subtasksVersion = epicsVersion = historyVersion = ++versionClock;
+        for (Integer epicId : mapOfEpics.keySet()) {
+            epicVersions.put(epicId, epicsVersion);
+        }
+        fireChange(TaskTypes.SUBTASK, 0);
+    }
+
+    // Версии коллекций и отдельных эпиков
+    @Override
+    public long getTasksVersion() {
+        return tasksVersion;
+    }
+
+    @Override
+    public long getEpicsVersion() {
+        return epicsVersion;
+    }
+
+    @Override
+    public long getSubtasksVersion() {
+        return subtasksVersion;
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        synchronized (history) {
+            return historyVersion;
+        }
+    }
+
+    @Override
+    public long getEpicVersion(int epicId) {
+        return epicVersions.getOrDefault(epicId, 0L);
+    }
+
+    @Override
+    public void addChangeListener(TaskChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChange(TaskTypes type, int epicId) {
+        for (TaskChangeListener listener : listeners) {
+            listener.onChange(type, epicId);
+        }
+    }
+
+    private void tasksChanged() {
+        tasksVersion = ++versionClock;
+        fireChange(TaskTypes.TASK, 0);
+    }
+
+    private void epicChanged(int epicId) {
+        epicsVersion = ++versionClock;
+        epicVersions.put(epicId, epicsVersion);
+        fireChange(TaskTypes.EPIC, epicId);
+    }
+
+    // Подзадача меняет и свой эпик
+    private void subtasksChanged(int epicId) {
+        subtasksVersion = ++versionClock;
+        epicsVersion = subtasksVersion;
+        if (mapOfEpics.containsKey(epicId)) {
+            epicVersions.put(epicId, subtasksVersion);
+        }
+        fireChange(TaskTypes.SUBTASK, epicId);
     }
 
     // Метод для получения списка всех подзадач определённого эпика.
     @Override
-    public HashMap<Integer, Subtask> getListAllSubtasksByEpic(Epic epic) {
+    public Map<Integer, Subtask> getListAllSubtasksByEpic(Epic epic) {
         return epic.getEpicSubtasks();
     }
 
     // Метод для получения списка истории просмотренных задач
     @Override
     public List<Task> getHistory() {
-        return history.getHistory();
+        synchronized (history) {
+            return history.getHistory();
+        }
+    }
+
+    @Override
+    public List<Task> getLastViewed(int limit) {
+        synchronized (history) {
+            return history.getLastViewed(limit);
+        }
     }
 
 
     @Override
     public List<Task> getAllTasksAllTypes() {
-        return Stream.of(mapOfTasks.values(), mapOfEpics.values(), mapOfSubtasks.values())
+        return Stream.of(getListAllTasks(), getListAllEpics(), getListAllSubtasks())
                 .flatMap(Collection::stream)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public int generateId() {
+        return idAllocator.nextId();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,436 @@
+package tasktracker.taskmanager;
+
+import tasktracker.api.KVClient;
+import tasktracker.api.KVTaskClient;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskIdAllocator;
+import tasktracker.tasks.TaskTypes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Менеджер, который хранит доску в KVServer, каждую задачу под своим ключом: task/<id>, epic/<id>, subtask/<id>
+   (строка в формате CSV, как в FileBackedTaskManager), историю - списком id под ключом history, границу выданных
+   id - под ключом ids.
+   Изменение отправляет только затронутые им ключи (подзадача - вместе с эпиком, у которого пересчитались статус
+   и время), а не всю доску, одним запросом /save-batch. Ключи, которые отправить не удалось, остаются
+   неотправленными и уходят со следующим изменением (значение берется текущее). Просмотры историю сразу не
+   отправляют: она уходит вместе со следующим изменением, раз в HISTORY_SYNC_VIEWS просмотров или при flush/close.
+   При создании менеджер загружает сохраненную доску пакетами /load-batch.
+   Как и FileBackedTaskManager, изменения сами по себе не потокобезопасны (см. ConcurrentTaskManager), а просмотры
+   можно выполнять параллельно. */
+public class KVTaskManager extends InMemoryTaskManager implements AutoCloseable {
+
+    static final String HISTORY_KEY = "history";
+    static final String IDS_KEY = "ids";
+
+    // Раз в столько просмотров история отправляется, даже если изменений нет
+    static final int HISTORY_SYNC_VIEWS = 100;
+
+    // Сколько id резервируется одной записью границы (как в FileBackedTaskManager)
+    private static final int ID_BLOCK_SIZE = 1_000;
+
+    private final KVClient client;
+    private final ReentrantLock sendLock = new ReentrantLock(); // пакеты отправляются по одному и по порядку
+    // Неотправленные ключи и счетчик просмотров; доступ только под монитором unsent
+    private final Set<String> unsent = new LinkedHashSet<>();
+    private int unsentViews;
+    private long savedHistoryVersion;
+    private int reservedIds; // граница id, записанная (или ждущая отправки) под ключом ids
+    private int issuedIds; // максимум из границы, прочитанной при загрузке, и id задач этого менеджера
+    private boolean restoring; // во время загрузки ничего не отправляем
+
+    public KVTaskManager(String url) {
+        this(new KVTaskClient(url));
+    }
+
+    // client - один KVServer (KVTaskClient) или несколько (ShardedKVClient)
+    public KVTaskManager(KVClient client) {
+        this(client, Task.getIdAllocator());
+    }
+
+    // idAllocator - свой счетчик id менеджера; граница под ключом ids сдвигает только его
+    public KVTaskManager(KVClient client, TaskIdAllocator idAllocator) {
+        super(idAllocator);
+        this.client = client;
+        load();
+    }
+
+    static String key(TaskTypes type, int id) {
+        return prefix(type) + id;
+    }
+
+    private static String prefix(TaskTypes type) {
+        return type.name().toLowerCase() + "/";
+    }
+
+    private static String key(Task task) {
+        return key(task.getType(), task.getId());
+    }
+
+    /* Эпики восстанавливаются раньше подзадач; значения всех типов, история и граница id загружаются одним loadAll.
+       Счетчик id продолжается с границы, поэтому id удаленных задач после перезапуска повторно не выдаются. */
+    private void load() {
+        List<String> keys = new ArrayList<>();
+        for (TaskTypes type : List.of(TaskTypes.TASK, TaskTypes.EPIC, TaskTypes.SUBTASK)) {
+            keys.addAll(client.keys(prefix(type)));
+        }
+        final int taskKeys = keys.size();
+        keys.add(HISTORY_KEY);
+        keys.add(IDS_KEY);
+        Map<String, String> values = client.loadAll(keys);
+        restoring = true;
+        try {
+            int maxId = 0;
+            for (String key : keys.subList(0, taskKeys)) {
+                final String line = values.get(key);
+                if (line != null) {
+                    final Task task = FileBackedTaskManager.fromString(line);
+                    restoreTask(task);
+                    maxId = Math.max(maxId, task.getId());
+                }
+            }
+            final String history = values.get(HISTORY_KEY);
+            if (history != null) {
+                for (int id : FileBackedTaskManager.historyFromString(history)) {
+                    restoreView(id);
+                }
+            }
+            final String ids = values.get(IDS_KEY);
+            reservedIds = Math.max(maxId, ids == null ? 0 : Integer.parseInt(ids.trim()));
+            issuedIds = reservedIds;
+            getIdAllocator().advanceTo(reservedIds);
+        } finally {
+            restoring = false;
+        }
+        savedHistoryVersion = getHistoryVersion();
+    }
+
+    private void restoreView(int id) {
+        if (getMapOfTasks().containsKey(id)) {
+            super.getTaskById(id);
+        } else if (getMapOfEpics().containsKey(id)) {
+            super.getEpicById(id);
+        } else if (getMapOfSubtasks().containsKey(id)) {
+            super.getSubtaskById(id);
+        }
+    }
+
+    // Помечает измененные задачи и удаленные ключи неотправленными и отправляет их вместе с ранее не отправленными
+    private void sync(Collection<? extends Task> changed, Collection<String> removed) {
+        if (restoring) {
+            return;
+        }
+        synchronized (unsent) {
+            for (Task task : changed) {
+                unsent.add(key(task));
+                reserveIds(task.getId());
+            }
+            unsent.addAll(removed);
+        }
+        flush();
+    }
+
+    private void sync(Task... changed) {
+        sync(List.of(changed), List.of());
+    }
+
+    /* Граница id перезаписывается один раз на ID_BLOCK_SIZE новых задач и уходит в том же пакете, что и задача.
+       Вызывается под монитором unsent. */
+    private void reserveIds(int id) {
+        if (id > reservedIds) {
+            reservedIds = id + ID_BLOCK_SIZE;
+            unsent.add(IDS_KEY);
+        }
+        issuedIds = Math.max(issuedIds, id);
+    }
+
+    // Просмотр только считается; история уходит со следующим изменением или раз в HISTORY_SYNC_VIEWS просмотров
+    private void viewed() {
+        synchronized (unsent) {
+            if (++unsentViews < HISTORY_SYNC_VIEWS) {
+                return;
+            }
+        }
+        // если пакет уже отправляет другой поток, история уйдет со следующим
+        if (sendLock.tryLock()) {
+            try {
+                send();
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    // Отправляет все неотправленные ключи и историю (если она изменилась) одним пакетным запросом
+    public void flush() {
+        sendLock.lock();
+        try {
+            send();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    // Записывает неотправленное и точную границу id, чтобы после перезапуска не пропускать остаток блока
+    @Override
+    public void close() {
+        synchronized (unsent) {
+            if (issuedIds != reservedIds) {
+                reservedIds = issuedIds;
+                unsent.add(IDS_KEY);
+            }
+        }
+        flush();
+    }
+
+    /* Вызывается под sendLock. Значения берутся текущие: ключ, который успел измениться или удалиться после
+       неудачной отправки, уходит в последнем состоянии. Если отправить не удалось, ключи остаются неотправленными. */
+    private void send() {
+        final long historyVersion = getHistoryVersion();
+        Map<String, String> batch = new LinkedHashMap<>();
+        synchronized (unsent) {
+            if (historyVersion != savedHistoryVersion) {
+                unsent.add(HISTORY_KEY);
+            }
+            for (String key : unsent) {
+                batch.put(key, value(key));
+            }
+            unsent.clear();
+            unsentViews = 0;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            client.putAll(batch);
+        } catch (RuntimeException e) {
+            synchronized (unsent) {
+                unsent.addAll(batch.keySet());
+            }
+            throw e;
+        }
+        synchronized (unsent) {
+            savedHistoryVersion = Math.max(savedHistoryVersion, historyVersion);
+        }
+    }
+
+    // Текущее значение ключа; null - задачи больше нет, ключ удаляется
+    private String value(String key) {
+        if (HISTORY_KEY.equals(key)) {
+            return historyValue();
+        }
+        if (IDS_KEY.equals(key)) {
+            return Integer.toString(reservedIds);
+        }
+        final int slash = key.indexOf('/');
+        final int id = Integer.parseInt(key.substring(slash + 1));
+        final Task task;
+        switch (TaskTypes.valueOf(key.substring(0, slash).toUpperCase())) {
+            case EPIC:
+                task = getMapOfEpics().get(id);
+                break;
+            case SUBTASK:
+                task = getMapOfSubtasks().get(id);
+                break;
+            default:
+                task = getMapOfTasks().get(id);
+        }
+        return task == null ? null : task.toString();
+    }
+
+    // Пустое значение KVServer не принимает: пустая история - это отсутствие ключа
+    private String historyValue() {
+        StringBuilder sb = new StringBuilder();
+        for (Task task : getHistory()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(task.getId());
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    // Подзадача вместе с эпиками, у которых пересчитались статус и время
+    private List<Task> withEpics(Collection<? extends Task> tasks, Collection<Integer> epicIds) {
+        List<Task> changed = new ArrayList<>(tasks);
+        Set<Integer> ids = new LinkedHashSet<>(epicIds);
+        for (Task task : tasks) {
+            if (task instanceof Subtask) {
+                ids.add(((Subtask) task).getEpicId());
+            }
+        }
+        for (int epicId : ids) {
+            final Epic epic = getMapOfEpics().get(epicId);
+            if (epic != null) {
+                changed.add(epic);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void createTask(Task task) {
+        super.createTask(task);
+        sync(task);
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        super.createEpic(epic);
+        sync(epic);
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        super.createSubtask(subtask);
+        sync(withEpics(List.of(subtask), List.of()), List.of());
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        super.updateTask(task);
+        sync(task);
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        super.updateEpic(epic);
+        sync(epic);
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        final Subtask oldSubtask = subtask == null ? null : getMapOfSubtasks().get(subtask.getId());
+        super.updateSubtask(subtask);
+        sync(withEpics(List.of(subtask), oldSubtask == null ? List.of() : List.of(oldSubtask.getEpicId())),
+                List.of());
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        final Task task = super.getTaskById(id);
+        viewed();
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        final Epic epic = super.getEpicById(id);
+        viewed();
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        final Subtask subtask = super.getSubtaskById(id);
+        viewed();
+        return subtask;
+    }
+
+    @Override
+    public void removeTaskById(int taskId) {
+        super.removeTaskById(taskId);
+        sync(List.of(), List.of(key(TaskTypes.TASK, taskId)));
+    }
+
+    @Override
+    public void removeEpicById(int epicId) {
+        List<String> removed = new ArrayList<>();
+        removed.add(key(TaskTypes.EPIC, epicId));
+        for (int subtaskId : getSubtaskIds(epicId)) {
+            removed.add(key(TaskTypes.SUBTASK, subtaskId));
+        }
+        super.removeEpicById(epicId);
+        sync(List.of(), removed);
+    }
+
+    @Override
+    public void removeSubtaskById(int subtaskId) {
+        final Subtask subtask = getMapOfSubtasks().get(subtaskId);
+        super.removeSubtaskById(subtaskId);
+        sync(withEpics(List.of(), List.of(subtask.getEpicId())), List.of(key(TaskTypes.SUBTASK, subtaskId)));
+    }
+
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        super.createAll(tasks);
+        sync(withEpics(tasks, List.of()), List.of());
+    }
+
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        List<Integer> oldEpicIds = new ArrayList<>();
+        for (Task task : tasks) {
+            final Subtask oldSubtask = task == null ? null : getMapOfSubtasks().get(task.getId());
+            if (oldSubtask != null) {
+                oldEpicIds.add(oldSubtask.getEpicId());
+            }
+        }
+        super.updateAll(tasks);
+        sync(withEpics(tasks, oldEpicIds), List.of());
+    }
+
+    @Override
+    public void removeAll(Collection<Integer> ids) {
+        List<String> removed = new ArrayList<>();
+        List<Integer> epicIds = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id == null) {
+                continue;
+            }
+            if (getMapOfTasks().containsKey(id)) {
+                removed.add(key(TaskTypes.TASK, id));
+            } else if (getMapOfEpics().containsKey(id)) {
+                removed.add(key(TaskTypes.EPIC, id));
+                for (int subtaskId : getSubtaskIds(id)) {
+                    removed.add(key(TaskTypes.SUBTASK, subtaskId));
+                }
+            } else if (getMapOfSubtasks().containsKey(id)) {
+                removed.add(key(TaskTypes.SUBTASK, id));
+                epicIds.add(getMapOfSubtasks().get(id).getEpicId());
+            }
+        }
+        super.removeAll(ids);
+        sync(withEpics(List.of(), epicIds), removed);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        List<String> removed = keys(TaskTypes.TASK, getMapOfTasks().keySet());
+        super.deleteAllTasks();
+        sync(List.of(), removed);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        List<String> removed = keys(TaskTypes.EPIC, getMapOfEpics().keySet());
+        removed.addAll(keys(TaskTypes.SUBTASK, getMapOfSubtasks().keySet()));
+        super.deleteAllEpics();
+        sync(List.of(), removed);
+    }
+
+    // Статус и время всех эпиков сбрасываются, поэтому эпики отправляются заново
+    @Override
+    public void deleteAllSubtasks() {
+        List<String> removed = keys(TaskTypes.SUBTASK, getMapOfSubtasks().keySet());
+        super.deleteAllSubtasks();
+        sync(new ArrayList<>(getMapOfEpics().values()), removed);
+    }
+
+    private static List<String> keys(TaskTypes type, Collection<Integer> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            keys.add(key(type, id));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,7 @@
+package tasktracker.taskmanager;
+
+// Форматы файла снимка FileBackedTaskManager
+public enum SnapshotFormat {
+    CSV,    // текстовый формат: id,type,name,status,description,startTime,duration,epic
+    BINARY  // компактный двоичный формат с контрольной суммой, см. BinarySnapshot
+}
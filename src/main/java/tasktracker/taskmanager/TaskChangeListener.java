@@ -0,0 +1,12 @@
+package tasktracker.taskmanager;
+
+import tasktracker.tasks.TaskTypes;
+
+/* Подписчик на изменения менеджера (например, кэш ответов сервера). Вызывается синхронно внутри изменения,
+   поэтому должен работать быстро и не обращаться к менеджеру. */
+@FunctionalInterface
+public interface TaskChangeListener {
+
+    // type - изменившаяся коллекция; epicId - затронутый эпик или 0, если изменились все эпики (или ни один)
+    void onChange(TaskTypes type, int epicId);
+}
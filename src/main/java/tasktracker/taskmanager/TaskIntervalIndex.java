@@ -0,0 +1,131 @@
+package tasktracker.taskmanager;
+
+import tasktracker.tasks.Task;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/* Индекс интервалов [startTime, endTime) задач и подзадач для проверки пересечений по времени за O(log n).
+   Интервалы в индексе между собой не пересекаются (это гарантирует taskTimeValidation), поэтому при сортировке
+   по (начало, конец, id) концы интервалов тоже идут по неубыванию. Значит, из всех интервалов, которые начинаются
+   раньше конца проверяемого, самый поздний конец у последнего из них - достаточно проверить только его. */
+class TaskIntervalIndex {
+
+    private final TreeSet<Interval> intervals = new TreeSet<>();
+    private final Map<Integer, Interval> intervalsById = new HashMap<>();
+
+    // Добавляет (или перемещает при обновлении) интервал задачи. Задачи без времени в индекс не попадают.
+    void add(Task task) {
+        remove(task.getId());
+        if (task.getStartTime() == null) {
+            return;
+        }
+        Interval interval = new Interval(toSeconds(task.getStartTime()), toSeconds(task.getEndTime()), task.getId());
+        intervals.add(interval);
+        intervalsById.put(task.getId(), interval);
+    }
+
+    void remove(int id) {
+        Interval interval = intervalsById.remove(id);
+        if (interval != null) {
+            intervals.remove(interval);
+        }
+    }
+
+    void clear() {
+        intervals.clear();
+        intervalsById.clear();
+    }
+
+    // Удаляет интервалы всех задач, id которых подходят под условие, за один проход
+    void removeIf(IntPredicate ids) {
+        intervals.removeIf(interval -> ids.test(interval.id));
+        intervalsById.keySet().removeIf(ids::test);
+    }
+
+    int size() {
+        return intervals.size();
+    }
+
+    // Пересекается ли [start, end) с интервалом любой задачи
+    boolean hasOverlap(LocalDateTime start, LocalDateTime end) {
+        return hasOverlap(start, end, Integer.MIN_VALUE); // такого id у задач не бывает
+    }
+
+    // Пересекается ли [start, end) с интервалом любой задачи, кроме задачи с id excludedId
+    boolean hasOverlap(LocalDateTime start, LocalDateTime end, int excludedId) {
+        final long startSeconds = toSeconds(start);
+        final long endSeconds = toSeconds(end);
+
+        // последний интервал, который начинается строго раньше конца проверяемого
+        Interval candidate = intervals.lower(new Interval(endSeconds, Long.MIN_VALUE, Integer.MIN_VALUE));
+        if (candidate != null && candidate.id == excludedId) {
+            candidate = intervals.lower(candidate); // сама задача при обновлении себе не мешает
+        }
+        return candidate != null && candidate.end > startSeconds;
+    }
+
+    /* Временно убирает интервалы задач ids (например, заменяемых пакетом обновлений, чтобы старые интервалы
+       не мешали проверке) и возвращает их для restore. */
+    List<Interval> detach(Collection<Integer> ids) {
+        List<Interval> detached = new ArrayList<>();
+        for (Integer id : ids) {
+            Interval interval = intervalsById.remove(id);
+            if (interval != null) {
+                intervals.remove(interval);
+                detached.add(interval);
+            }
+        }
+        return detached;
+    }
+
+    // Возвращает интервалы, убранные detach
+    void restore(List<Interval> detached) {
+        restore(detached, id -> true);
+    }
+
+    // Возвращает убранные detach интервалы задач ids, у которых в индексе еще нет нового интервала
+    void restore(List<Interval> detached, IntPredicate ids) {
+        for (Interval interval : detached) {
+            if (ids.test(interval.id) && !intervalsById.containsKey(interval.id)) {
+                intervals.add(interval);
+                intervalsById.put(interval.id, interval);
+            }
+        }
+    }
+
+    private static long toSeconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static final class Interval implements Comparable<Interval> {
+        private final long start;
+        private final long end;
+        private final int id;
+
+        private Interval(long start, long end, int id) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Interval other) {
+            int result = Long.compare(start, other.start);
+            if (result == 0) {
+                result = Long.compare(end, other.end);
+            }
+            if (result == 0) {
+                result = Integer.compare(id, other.id);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package tasktracker.taskmanager;
+
+import tasktracker.exceptions.ManagerSaveException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/* Журнал изменений менеджера: одна короткая строка на каждое изменение, дописывается в конец файла.
+   Стоимость записи не зависит от размера доски. Журнал применяется поверх последнего снимка и очищается,
+   когда менеджер записывает новый снимок. */
+class TaskJournal {
+
+    private final File file;
+    private int records; // количество записей с момента последнего снимка
+
+    TaskJournal(File file) {
+        this.file = file;
+    }
+
+    /* Дописывает записи одной операцией записи и сбрасывает их на диск (один fsync на пакет записей, поэтому
+       групповая запись FileBackedTaskManager платит за него один раз) */
+    synchronized void append(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        final boolean created = !file.exists();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось дописать журнал " + file, e);
+        }
+        if (created) {
+            FileBackedTaskManager.syncDirectory(file.toPath());
+        }
+        records += lines.length;
+    }
+
+    // Построчно передает записи журнала обработчику (файл целиком в память не читается)
+    synchronized void replay(Consumer<String> consumer) {
+        if (!file.exists()) {
+            return;
+        }
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    consumer.accept(line);
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось прочитать журнал " + file, e);
+        }
+        records = count;
+    }
+
+    // Очищает журнал после записи снимка
+    synchronized void reset() {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось очистить журнал " + file, e);
+        }
+        records = 0;
+    }
+
+    synchronized int size() {
+        return records;
+    }
+
+    File getFile() {
+        return file;
+    }
+}
@@ -5,8 +5,9 @@ import tasktracker.tasks.Subtask;
 import tasktracker.tasks.Task;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface TaskManager {
@@ -26,6 +27,12 @@ public interface TaskManager {
     ArrayList<Epic> getListAllEpics();
     ArrayList<Subtask> getListAllSubtasks();
 
+    // Постраничная выдача по возрастанию id: не больше limit задач с id больше afterId (для первой страницы - 0)
+    List<Task> getTasksPage(int afterId, int limit);
+    List<Epic> getEpicsPage(int afterId, int limit);
+    List<Subtask> getSubtasksPage(int afterId, int limit);
+    List<Task> getAllTasksAllTypesPage(int afterId, int limit);
+
     // Методы для обновления задач соответствующей коллекции
     void updateTask(Task task);
     void updateEpic(Epic epic);
@@ -36,18 +43,41 @@ public interface TaskManager {
     void removeEpicById(int epicId);
     void removeSubtaskById(int subtaskId);
 
+    /* Пакетные операции для задач любого типа: весь пакет проверяется (в том числе пересечения по времени - одним
+       проходом по отсортированному пакету) и применяется целиком, либо не применяется вовсе. В createAll эпики
+       должны идти раньше своих подзадач. */
+    void createAll(List<? extends Task> tasks);
+    void updateAll(List<? extends Task> tasks);
+    void removeAll(Collection<Integer> ids);
+
     // Методы для удаления всех задач в соответствующей коллекции
     void deleteAllTasks();
     void deleteAllEpics();
     void deleteAllSubtasks();
 
     // Метод для получения списка всех подзадач определённого эпика.
-    HashMap<Integer, Subtask> getListAllSubtasksByEpic(Epic epic);
+    Map<Integer, Subtask> getListAllSubtasksByEpic(Epic epic);
 
     // Метод для возврата списка истории просмотра задач
     List<Task> getHistory();
 
+    // Не больше limit последних просмотренных задач
+    List<Task> getLastViewed(int limit);
+
     Set<Task> getPrioritizedTasks();
 
     List<Task> getAllTasksAllTypes();
+
+    // Версии данных для условных запросов (ETag): растут при каждом изменении соответствующей коллекции
+    long getTasksVersion();
+    long getEpicsVersion();
+    long getSubtasksVersion();
+    long getHistoryVersion();
+    long getEpicVersion(int epicId); // 0, если эпика нет
+
+    // Подписка на изменения коллекций (для точной инвалидации кэшей)
+    void addChangeListener(TaskChangeListener listener);
+
+    // Выдает новый id для задачи, созданной не через конструктор (например, пришедшей по http)
+    int generateId();
 }
@@ -0,0 +1,86 @@
+package tasktracker.taskmanager;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Фоновый поток, который объединяет изменения за интервал (или за N операций) в одну запись на диск.
+   Сама запись выполняется переданным действием, здесь только планирование. */
+class WriteBehindFlusher implements AutoCloseable {
+
+    // Неудачная запись повторяется с удвоением паузы, но не реже, чем раз в столько миллисекунд
+    private static final long MAX_RETRY_DELAY_MILLIS = 1_000;
+
+    private final Runnable flushAction;
+    private final long intervalMillis;
+    private final int maxPendingOps;
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger pendingOps = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private long retryDelayMillis; // только в потоке записи
+
+    WriteBehindFlusher(Runnable flushAction, long intervalMillis, int maxPendingOps) {
+        this.flushAction = flushAction;
+        this.intervalMillis = intervalMillis;
+        this.maxPendingOps = maxPendingOps;
+        this.retryDelayMillis = intervalMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-manager-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* Сообщает об очередном изменении: запись произойдет по истечении интервала или сразу после N-го изменения.
+       После close() фонового потока уже нет, поэтому изменение записывается сразу в вызывающем потоке. */
+    void requestFlush() {
+        try {
+            if (pendingOps.incrementAndGet() == maxPendingOps) {
+                executor.execute(this::runFlush);
+            } else if (scheduled.compareAndSet(false, true)) {
+                executor.schedule(this::runFlush, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            flushAction.run();
+        }
+    }
+
+    private void runFlush() {
+        scheduled.set(false);
+        pendingOps.set(0);
+        try {
+            flushAction.run();
+            retryDelayMillis = intervalMillis;
+        } catch (RuntimeException e) {
+            // изменения остаются помеченными как незаписанные, повторяем запись, не дожидаясь новых изменений
+            scheduleRetry();
+        }
+    }
+
+    private void scheduleRetry() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return; // запись уже запланирована новым изменением
+        }
+        try {
+            executor.schedule(this::runFlush, retryDelayMillis, TimeUnit.MILLISECONDS);
+            retryDelayMillis = Math.min(Math.max(1, retryDelayMillis * 2), MAX_RETRY_DELAY_MILLIS);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false); // поток остановлен, оставшиеся изменения запишет close() менеджера
+        }
+    }
+
+    // Останавливает поток, дожидаясь уже запланированных записей
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(intervalMillis + 10_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package tasktracker.tasks;
 
+import tasktracker.collections.IntObjectMap;
+
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.TreeMap;
 
 import static tasktracker.tasks.TaskStatuses.*;
 
@@ -9,21 +11,36 @@ public class Epic extends Task {
     /* в этом классе возможно все таки надо было переопределить getDuration, а не getEndTime? Я его переопределил
        и вроде все ок стало :) По крайней мере то, что ты описал в замечании в этом классе. */
 
-    private final HashMap<Integer, Subtask> epicSubtasks;
+    private final IntObjectMap<Subtask> epicSubtasks;
     private LocalDateTime endTime;
 
+    /* Накопленные значения по подзадачам: изменение одной подзадачи обновляет их за O(log k) вместо обхода всех.
+       Начала и концы хранятся как мультимножества (время -> количество подзадач). Вклад каждой подзадачи
+       запоминается при учете: подзадачу могут изменить на месте (setStatus) и передать в updateSubtask тем же
+       объектом, и тогда вычитать нужно прежние значения, а не текущие поля. Поля transient: в JSON не попадают,
+       а у эпика, созданного Gson без конструктора, строятся при первом изменении. */
+    private transient boolean aggregated;
+    private transient IntObjectMap<Contribution> contributions;
+    private transient int countNew;
+    private transient int countDone;
+    private transient long totalDuration;
+    private transient TreeMap<LocalDateTime, Integer> subtaskStarts;
+    private transient TreeMap<LocalDateTime, Integer> subtaskEnds;
+
     // Конструктор для создания эпика.
     public Epic(String name, String description) {
         super(name, description);
-        epicSubtasks = new HashMap<>();
+        epicSubtasks = new IntObjectMap<>();
         calculateEpicStatus();
         calculateEpicDuration();
     }
 
-    // Конструктор для обновления эпика.
+    // Конструктор для обновления эпика: id уже известен, счетчик не расходуется.
     public Epic(int id, String name, String description) {
-        this(name, description);
-        this.id = id;
+        super(id, name, description);
+        epicSubtasks = new IntObjectMap<>();
+        calculateEpicStatus();
+        calculateEpicDuration();
     }
 
     // Конструктор для создания эпика из строки.
@@ -39,13 +56,40 @@ public class Epic extends Task {
         this.duration = duration;
     }
 
+    // Конструктор для восстановления эпика из файла без повторной проверки времени.
+    public Epic(int id, String name, String description, TaskStatuses status, LocalDateTime startTime, long duration) {
+        this(id, name, description, status);
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
+    // Учтенные значения одной подзадачи
+    private static final class Contribution {
+        private final TaskStatuses status;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final long duration;
+
+        private Contribution(Subtask subtask) {
+            this.status = subtask.status;
+            this.startTime = subtask.getStartTime();
+            this.endTime = subtask.getEndTime();
+            this.duration = subtask.duration;
+        }
+    }
+
     public void addSubtask(Subtask subtask) {
+        aggregate();
+        untrack(subtask.id);
         epicSubtasks.put(subtask.id, subtask);
+        track(subtask);
         calculateEpicStatus();
         calculateEpicDuration();
     }
 
     public void deleteSubtask(int subtaskId) {
+        aggregate();
+        untrack(subtaskId);
         epicSubtasks.remove(subtaskId);
         calculateEpicStatus();
         calculateEpicDuration();
@@ -53,11 +97,12 @@ public class Epic extends Task {
 
     public void clearSubtask() {
         epicSubtasks.clear();
+        aggregated = false;
         calculateEpicStatus();
         calculateEpicDuration();
     }
 
-    public HashMap<Integer, Subtask> getEpicSubtasks() {
+    public IntObjectMap<Subtask> getEpicSubtasks() {
         return epicSubtasks;
     }
 
@@ -76,68 +121,87 @@ public class Epic extends Task {
         return endTime == null ? null : endTime.format(Task.FORMATTER);
     }
 
-    private void calculateEpicStatus() {
-        // Считаем количество подзадач со статусом NEW и DONE.
-        int countNew = 0;
-        int countDone = 0;
-        if (!epicSubtasks.isEmpty()) {
-            for (Subtask subtask : epicSubtasks.values()) {
-                switch (subtask.status) {
-                    case NEW:
-                        countNew++;
-                        break;
-                    case DONE:
-                        countDone++;
-                        break;
-                }
-            }
-
-            // В зависимости от количества задач с определенным статусом устанавливаем статус для эпика.
-            if (epicSubtasks.size() == countNew) {
-                this.status = NEW;
-            } else if (epicSubtasks.size() == countDone) {
-                this.status = DONE;
-            } else {
-                this.status = IN_PROGRESS;
-            }
+    // Строит накопленные значения заново (один раз для эпика или после очистки)
+    private void aggregate() {
+        if (aggregated) {
+            return;
+        }
+        countNew = 0;
+        countDone = 0;
+        totalDuration = 0;
+        subtaskStarts = new TreeMap<>();
+        subtaskEnds = new TreeMap<>();
+        contributions = new IntObjectMap<>();
+        aggregated = true;
+        for (Subtask subtask : epicSubtasks.values()) {
+            track(subtask);
         }
     }
 
-    private void calculateEpicDuration() {
-        if (!epicSubtasks.isEmpty() && epicSubtasks.size() > 1) {
-            LocalDateTime epicStartTime = LocalDateTime.MAX;
-            LocalDateTime epicEndTime = LocalDateTime.MIN;
-            long epicDuration = 0;
-
-            for (Subtask subtask : epicSubtasks.values()) {
-                if (subtask.getStartTime() != null && subtask.getStartTime().isBefore(epicStartTime)) {
-                    epicStartTime = subtask.getStartTime();
-                }
-                if (subtask.getEndTime() != null && subtask.getEndTime().isAfter(epicEndTime)) {
-                    epicEndTime = subtask.getEndTime();
-                }
-                epicDuration += subtask.duration;
-            }
-
-            this.startTime = epicStartTime;
-            this.endTime = epicEndTime;
-//            this.duration = getDuration();
-            this.duration = epicDuration;
-
-        } else if (epicSubtasks.size() == 1) {
-            int subtaskId = 0;
-            for (Integer id : epicSubtasks.keySet()) {
-                subtaskId = id;
-            }
-            this.startTime = epicSubtasks.get(subtaskId).getStartTime();
-            this.endTime = epicSubtasks.get(subtaskId).getEndTime();
-            this.duration = epicSubtasks.get(subtaskId).getDuration();
+    private void track(Subtask subtask) {
+        final Contribution contribution = new Contribution(subtask);
+        contributions.put(subtask.id, contribution);
+        count(contribution, 1);
+    }
 
+    private void untrack(int subtaskId) {
+        final Contribution contribution = contributions.remove(subtaskId);
+        if (contribution != null) {
+            count(contribution, -1);
+        }
+    }
+
+    private void count(Contribution subtask, int delta) {
+        switch (subtask.status) {
+            case NEW:
+                countNew += delta;
+                break;
+            case DONE:
+                countDone += delta;
+                break;
+        }
+        totalDuration += delta * subtask.duration;
+        if (subtask.startTime != null) {
+            subtaskStarts.merge(subtask.startTime, delta, Epic::sumOrRemove);
+            subtaskEnds.merge(subtask.endTime, delta, Epic::sumOrRemove);
+        }
+    }
+
+    // Количество 0 удаляет время из мультимножества
+    private static Integer sumOrRemove(Integer count, Integer delta) {
+        final int sum = count + delta;
+        return sum == 0 ? null : sum;
+    }
+
+    private void calculateEpicStatus() {
+        // Статус по количеству подзадач со статусом NEW и DONE; без подзадач статус не меняется.
+        final int size = epicSubtasks.size();
+        if (size == 0) {
+            return;
+        }
+        if (size == countNew) {
+            this.status = NEW;
+        } else if (size == countDone) {
+            this.status = DONE;
         } else {
+            this.status = IN_PROGRESS;
+        }
+    }
+
+    /* Начало - самое раннее начало подзадач, конец - самый поздний конец, длительность - сумма длительностей.
+       Как и раньше, если подзадач несколько, но ни у одной нет времени, начало и конец - LocalDateTime.MAX и MIN. */
+    private void calculateEpicDuration() {
+        final int size = epicSubtasks.size();
+        if (size == 0) {
             this.startTime = null;
             this.endTime = null;
             this.duration = 0;
+            return;
         }
+        final boolean timed = !subtaskStarts.isEmpty();
+        this.startTime = timed ? subtaskStarts.firstKey() : (size > 1 ? LocalDateTime.MAX : null);
+        this.endTime = timed ? subtaskEnds.lastKey() : (size > 1 ? LocalDateTime.MIN : null);
+        this.duration = totalDuration;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package tasktracker.tasks;
 
+import java.time.LocalDateTime;
+
 public class Subtask extends Task {
     private String epicName;
     private final int epicId;
@@ -52,6 +54,14 @@ public class Subtask extends Task {
         this.duration = duration;
     }
 
+    // Конструктор для восстановления сабтаски из файла без повторной проверки времени.
+    public Subtask(int subtaskId, String name, String description, TaskStatuses status, int epicId,
+                   LocalDateTime startTime, long duration) {
+        this(subtaskId, name, description, status, epicId);
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
     public String getEpicName() {
         return epicName;
     }
@@ -10,14 +10,14 @@ public class Task {
     protected String name;
     protected String description;
     protected TaskStatuses status;
-    protected static int countTaskId;
+    private static final TaskIdAllocator ID_ALLOCATOR = new TaskIdAllocator();
     protected LocalDateTime startTime;
     protected long duration;
     protected static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
     // Конструктор с возможностью указать время старта и длительность задачи
     public Task(String name, String description, String startTime, int duration) {
-        id = ++countTaskId;
+        id = ID_ALLOCATOR.nextId();
         this.name = name;
         this.description = description;
         this.startTime = setStartTime(startTime);
@@ -27,16 +27,23 @@ public class Task {
 
     // Конструктор для новых задач со счетчиком для id.
     public Task(String name, String description) {
-        id = ++countTaskId;
+        id = ID_ALLOCATOR.nextId();
         this.name = name;
         this.description = description;
         this.status = TaskStatuses.NEW; // все новые задачи создаются по умолчанию со статусом NEW
     }
 
+    // Конструктор для задачи с уже известным id: общий счетчик не расходуется
+    protected Task(int id, String name, String description) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.status = TaskStatuses.NEW;
+    }
+
     // Конструктор для обновления задач без счетчика и с обновлением статуса (с 6-го спринта и для создания из файла).
     public Task(int id, String name, String description, TaskStatuses status) {
-        this(name, description);
-        this.id = id;
+        this(id, name, description);
         this.status = status;
     }
 
@@ -47,6 +54,13 @@ public class Task {
         this.duration = duration;
     }
 
+    // Конструктор для восстановления задачи из файла: время уже проверено при создании задачи, повторно не проверяем
+    public Task(int id, String name, String description, TaskStatuses status, LocalDateTime startTime, long duration) {
+        this(id, name, description, status);
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
     public int getId() {
         return id;
     }
@@ -99,7 +113,13 @@ public class Task {
     }
 
     public static void setCountTaskId(int countTaskId) {
-        Task.countTaskId = countTaskId;
+        ID_ALLOCATOR.reset(countTaskId);
+    }
+
+    /* Общий счетчик id: его расходуют конструкторы без id и менеджеры, созданные без своего счетчика
+       (см. InMemoryTaskManager(TaskIdAllocator)) */
+    public static TaskIdAllocator getIdAllocator() {
+        return ID_ALLOCATOR;
     }
 
     protected LocalDateTime setStartTime(String startTimeStr) {
@@ -117,7 +137,7 @@ public class Task {
     }
 
     public int getCountTaskId() {
-        return countTaskId;
+        return ID_ALLOCATOR.lastId();
     }
 
     public static DateTimeFormatter getFormatter() {
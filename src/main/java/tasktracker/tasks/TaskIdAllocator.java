@@ -0,0 +1,27 @@
+package tasktracker.tasks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Выдача идентификаторов задач без блокировок: одна атомарная операция на id, безопасно из любых потоков.
+   Сохранение выданных id (блоками, см. FileBackedTaskManager) остается за менеджером. */
+public final class TaskIdAllocator {
+
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    public int nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    public int lastId() {
+        return lastId.get();
+    }
+
+    // Сдвигает счетчик вперед (например, после загрузки из файла), но никогда не назад
+    public void advanceTo(int id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+    public void reset(int id) {
+        lastId.set(id);
+    }
+}
@@ -0,0 +1,213 @@
+package tasktracker.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Path dir;
+    private File storageDir;
+    private KVServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("kv-server");
+        storageDir = dir.resolve("kv").toFile();
+        server = new KVServer(0, storageDir, 2);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void loadShouldReturnSavedValueAndNotFoundForUnknownKey() throws Exception {
+        assertEquals(200, save("tasks", "[1,2,3]"));
+
+        HttpResponse<String> loaded = load("tasks");
+        assertEquals(200, loaded.statusCode());
+        assertEquals("[1,2,3]", loaded.body());
+        assertEquals(404, load("unknown").statusCode());
+    }
+
+    @Test
+    void valuesShouldSurviveRestartAndTornLogTail() throws Exception {
+        save("tasks", "old");
+        save("tasks", "new");
+        save("history", "[1]");
+        server.stop();
+        try (RandomAccessFile file = new RandomAccessFile(lastSegment(), "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{0, 0, 0, 5, 0, 0}); // недописанная запись в активном сегменте
+        }
+
+        server = new KVServer(0, storageDir, 2);
+        server.start();
+
+        assertEquals("new", load("tasks").body());
+        assertEquals("[1]", load("history").body());
+    }
+
+    @Test
+    void batchShouldSaveAndDeleteKeysAndSurviveRestart() throws Exception {
+        save("old", "value");
+        assertEquals(200, client.send(HttpRequest.newBuilder(uri("/save-batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"a\":\"1\",\"b\":\"2\",\"old\":null}")).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+        server.stop();
+        server = new KVServer(0, storageDir, 2);
+        server.start();
+
+        HttpResponse<String> loaded = client.send(HttpRequest.newBuilder(uri("/load-batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[\"a\",\"b\",\"old\",\"unknown\"]")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, loaded.statusCode());
+        assertEquals("{\"a\":\"1\",\"b\":\"2\"}", loaded.body());
+        assertEquals(404, load("old").statusCode());
+        assertEquals(400, client.send(HttpRequest.newBuilder(uri("/save-batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[1,2]")).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    @Test
+    void compactionShouldKeepOnlyLatestValues() throws IOException {
+        File storeDir = dir.resolve("compact").toFile();
+        KVStore store = new KVStore(storeDir, 256 * 1024);
+        byte[] value = new byte[64 * 1024];
+        for (int i = 0; i < 40; i++) {
+            value[0] = (byte) i;
+            store.put("key" + (i % 2), value.clone());
+        }
+        store.compact();
+        store.compact(); // повторное сжатие без новых записей ничего не меняет
+        byte[] latest = store.get("key1");
+        store.close();
+
+        assertTrue(store.getCompactions() > 0, "Хранилище должно было сжаться.");
+        assertTrue(store.getDiskBytes() < KVStore.MIN_COMPACT_BYTES);
+        KVStore reopened = new KVStore(storeDir, 256 * 1024);
+        assertEquals(2, reopened.size());
+        assertArrayEquals(latest, reopened.get("key1"));
+        assertEquals(39, reopened.get("key1")[0]);
+        reopened.close();
+    }
+
+    @Test
+    void removedKeyShouldNotReappearAfterInterruptedCompaction() throws IOException {
+        File storeDir = dir.resolve("interrupted").toFile();
+        KVStore store = new KVStore(storeDir, 1024);
+        store.put("removed", new byte[2048]);
+        store.put("kept", new byte[]{1});
+        store.remove("removed");
+        Path copy = Files.createDirectory(dir.resolve("copy"));
+        for (File file : storeDir.listFiles()) {
+            Files.copy(file.toPath(), copy.resolve(file.getName()));
+        }
+        store.compact();
+        store.close();
+        // сжатие прервано после публикации merged-файла, но до удаления старых сегментов
+        for (File file : copy.toFile().listFiles()) {
+            Files.copy(file.toPath(), storeDir.toPath().resolve(file.getName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        KVStore reopened = new KVStore(storeDir, 1024);
+        assertNull(reopened.get("removed"));
+        assertArrayEquals(new byte[]{1}, reopened.get("kept"));
+        assertEquals(2, reopened.getSegmentCount(), "Остаются merged-файл и новый активный сегмент.");
+        reopened.close();
+    }
+
+    @Test
+    void interruptedWriteAndReadShouldNotBreakStore() throws IOException {
+        File storeDir = dir.resolve("interrupt").toFile();
+        KVStore store = new KVStore(storeDir);
+        store.put("first", new byte[]{1});
+
+        Thread.currentThread().interrupt();
+        assertThrows(UncheckedIOException.class, () -> store.put("lost", new byte[]{2}));
+        assertTrue(Thread.interrupted());
+        store.put("second", new byte[]{3});
+        Thread.currentThread().interrupt();
+        assertThrows(UncheckedIOException.class, () -> store.get("first"));
+        assertTrue(Thread.interrupted());
+
+        assertArrayEquals(new byte[]{1}, store.get("first"));
+        store.put("third", new byte[]{4});
+        store.close();
+        KVStore reopened = new KVStore(storeDir);
+        assertArrayEquals(new byte[]{1}, reopened.get("first"));
+        assertArrayEquals(new byte[]{3}, reopened.get("second"));
+        assertArrayEquals(new byte[]{4}, reopened.get("third"));
+        assertNull(reopened.get("lost"));
+        reopened.close();
+    }
+
+    @Test
+    void failedCompactionShouldBeCountedAndRetried() throws IOException {
+        File storeDir = dir.resolve("failed-compaction").toFile();
+        KVStore store = new KVStore(storeDir, 1024);
+        store.put("key", new byte[2048]);
+        store.put("key", new byte[]{1});
+        Path blocker = Files.createDirectories(storeDir.toPath().resolve("merged.tmp").resolve("busy"));
+
+        assertThrows(UncheckedIOException.class, store::compact);
+        assertEquals(1, store.getCompactionFailures());
+        assertTrue(store.getLastCompactionError() instanceof IOException);
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        store.compact();
+        assertEquals(1, store.getCompactions());
+        assertArrayEquals(new byte[]{1}, store.get("key"));
+        store.close();
+    }
+
+    private int save(String key, String value) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri("/save/" + key))
+                .POST(HttpRequest.BodyPublishers.ofString(value)).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpResponse<String> load(String key) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri("/load/" + key)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private File lastSegment() {
+        File[] segments = storageDir.listFiles((file, name) -> name.startsWith("segment-"));
+        Arrays.sort(segments);
+        return segments[segments.length - 1];
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path + "?API_TOKEN=DEBUG");
+    }
+}
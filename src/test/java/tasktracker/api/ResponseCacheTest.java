@@ -0,0 +1,80 @@
+package tasktracker.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+    @Test
+    void invalidateShouldRemoveOnlyEntriesWithTag() {
+        ResponseCache cache = new ResponseCache(1_000_000, false);
+        cache.put("/tasks/task", cache.ticket(), new byte[10], null, "tasks");
+        cache.put("/tasks/subtask/epic?id=1", cache.ticket(), new byte[10], null, "epic-views", "epic:1");
+        cache.put("/tasks/subtask/epic?id=2", cache.ticket(), new byte[10], null, "epic-views", "epic:2");
+
+        cache.invalidate("epic:1");
+
+        assertNull(cache.get("/tasks/subtask/epic?id=1"));
+        assertNotNull(cache.get("/tasks/subtask/epic?id=2"));
+        assertNotNull(cache.get("/tasks/task"));
+        assertEquals(20, cache.getBytes());
+        assertEquals(1, cache.getInvalidations());
+
+        cache.invalidate("epic-views");
+        assertNull(cache.get("/tasks/subtask/epic?id=2"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void putShouldEvictLeastRecentlyUsedWhenOverBudget() {
+        ResponseCache cache = new ResponseCache(400, false);
+        cache.put("a", cache.ticket(), new byte[100], null, "tasks");
+        cache.put("b", cache.ticket(), new byte[100], null, "tasks");
+        cache.put("c", cache.ticket(), new byte[100], null, "tasks");
+        cache.get("a");
+        cache.put("d", cache.ticket(), new byte[100], null, "tasks");
+        cache.put("e", cache.ticket(), new byte[100], null, "tasks");
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(400, cache.getBytes());
+    }
+
+    @Test
+    void putShouldSkipResponseBuiltBeforeInvalidation() {
+        ResponseCache cache = new ResponseCache(1_000_000, false);
+        long ticket = cache.ticket();
+        cache.invalidate("tasks"); // данные изменились, пока ответ строился
+
+        cache.put("/tasks/task", ticket, new byte[10], null, "tasks");
+
+        assertNull(cache.get("/tasks/task"));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void putShouldGzipLargeBodies() throws IOException {
+        ResponseCache cache = new ResponseCache(1_000_000, true);
+        byte[] body = new byte[ResponseCache.GZIP_THRESHOLD * 4];
+        Arrays.fill(body, (byte) 'a');
+
+        ResponseCache.Entry entry = cache.put("big", cache.ticket(), body, "5", "tasks");
+        ResponseCache.Entry small = cache.put("small", cache.ticket(), new byte[10], null, "tasks");
+
+        assertNull(small.getGzipped());
+        assertEquals("5", entry.getNextCursor());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(entry.getGzipped()))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+}
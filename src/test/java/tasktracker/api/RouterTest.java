@@ -0,0 +1,43 @@
+package tasktracker.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouterTest {
+
+    @Test
+    void findShouldMatchMethodAndPath() {
+        RouteHandler handler = (h, query) -> Response.text(200, "ok");
+        Router router = new Router().get("/tasks/task", handler).delete("/tasks/task", handler);
+
+        assertNotNull(router.find("GET", "/tasks/task"));
+        assertNotNull(router.find("DELETE", "/tasks/task"));
+        assertNull(router.find("POST", "/tasks/task"));
+        assertNull(router.find("GET", "/tasks/unknown"));
+    }
+
+    @Test
+    void intParamShouldParseQueryWithoutRegex() {
+        assertEquals(15, Router.intParam("id=15", "id"));
+        assertEquals(7, Router.intParam("limit=3&id=7", "id"));
+        assertEquals(-1, Router.intParam("uid=7", "id"));
+        assertEquals(-1, Router.intParam("id=", "id"));
+        assertEquals(-1, Router.intParam("id=abc", "id"));
+        assertEquals(-1, Router.intParam(null, "id"));
+    }
+
+    // POST без параметра id создает задачу, даже если в запросе есть другие параметры
+    @Test
+    void hasParamShouldDetectParameterByName() {
+        assertTrue(Router.hasParam("id=7", "id"));
+        assertTrue(Router.hasParam("source=ui&id=abc", "id"));
+        assertFalse(Router.hasParam("source=ui", "id"));
+        assertFalse(Router.hasParam("uid=7", "id"));
+        assertFalse(Router.hasParam(null, "id"));
+    }
+}
@@ -0,0 +1,54 @@
+package tasktracker.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerExecutorTest {
+
+    @Test
+    void metricsShouldCountQueuedActiveAndCompletedRequests() throws InterruptedException {
+        ServerExecutor executor = new ServerExecutor(ExecutorMode.FIXED, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {
+        });
+
+        assertEquals(1, executor.getActiveThreads());
+        assertEquals(1, executor.getQueueDepth());
+
+        release.countDown();
+        executor.close();
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(2, executor.getCompleted());
+    }
+
+    @Test
+    void rejectedRequestShouldNotStayQueued() {
+        ServerExecutor executor = new ServerExecutor(ExecutorMode.FIXED, 1);
+        executor.close();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
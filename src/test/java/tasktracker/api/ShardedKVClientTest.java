@@ -0,0 +1,123 @@
+package tasktracker.api;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasktracker.taskmanager.KVTaskManager;
+import tasktracker.taskmanager.TaskManager;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedKVClientTest {
+
+    private static final int SERVERS = 4;
+    private static final int KEYS = 3_000;
+
+    private Path dir;
+    private final List<KVServer> servers = new ArrayList<>();
+    private final List<String> urls = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("kv-sharded");
+        for (int i = 0; i < SERVERS; i++) {
+            KVServer server = new KVServer(0, dir.resolve("kv" + i).toFile(), 2);
+            server.start();
+            servers.add(server);
+            urls.add("http://localhost:" + server.getPort());
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        servers.forEach(KVServer::stop);
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        Task.setCountTaskId(0);
+    }
+
+    @Test
+    void keysShouldSpreadEvenlyAndOnlyShareOfThemMoveToAddedNode() {
+        ShardedKVClient client = new ShardedKVClient(urls.subList(0, SERVERS - 1));
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            values.put("task/" + i, "value " + i);
+        }
+        client.putAll(values);
+        for (int i = 0; i < SERVERS - 1; i++) {
+            final int stored = keysOn(i);
+            assertTrue(stored > KEYS / 3 * 0.7 && stored < KEYS / 3 * 1.3,
+                    "На сервере " + i + " " + stored + " ключей.");
+        }
+
+        final int moved = client.addNode(urls.get(SERVERS - 1));
+
+        assertTrue(moved > KEYS / 4 * 0.6 && moved < KEYS / 4 * 1.4, "Перенесено " + moved + " ключей.");
+        assertEquals(moved, keysOn(SERVERS - 1));
+        int total = 0;
+        for (int i = 0; i < SERVERS; i++) {
+            total += keysOn(i);
+        }
+        assertEquals(KEYS, total, "Перенесенные ключи должны удалиться со старых серверов.");
+        assertEquals(values, client.loadAll(values.keySet()));
+        assertEquals("value 7", client.load("task/7"));
+        assertEquals(KEYS, client.keys("task/").size());
+    }
+
+    @Test
+    void keysShouldIgnoreCopiesLeftOnFormerOwner() {
+        ShardedKVClient client = new ShardedKVClient(urls.subList(0, 2));
+        client.put("task/1", "value");
+        final int owner = keysOn(0) == 1 ? 0 : 1;
+        new KVTaskClient(urls.get(1 - owner)).put("task/1", "stale"); // копия, которую не удалил addNode
+
+        assertEquals(List.of("task/1"), client.keys("task/"));
+        client.delete("task/1");
+
+        assertEquals(List.of(), client.keys("task/"), "Удаленный ключ не должен вернуться из копии.");
+        assertEquals(1, keysOn(1 - owner));
+    }
+
+    @Test
+    void taskManagerShouldRestoreBoardFromShards() {
+        KVTaskManager manager = new KVTaskManager(new ShardedKVClient(urls));
+        Epic epic = new Epic("epic", "desc");
+        manager.createTask(new Task("task", "desc"));
+        manager.createEpic(epic);
+        manager.createSubtask(new Subtask("subtask", "desc", epic));
+        manager.getEpicById(epic.getId());
+        manager.close();
+
+        TaskManager restored = new KVTaskManager(new ShardedKVClient(urls));
+
+        assertEquals(manager.getListAllTasks().toString(), restored.getListAllTasks().toString());
+        assertEquals(manager.getListAllEpics().toString(), restored.getListAllEpics().toString());
+        assertEquals(manager.getListAllSubtasks().toString(), restored.getListAllSubtasks().toString());
+        assertEquals(manager.getHistory().toString(), restored.getHistory().toString());
+    }
+
+    private int keysOn(int server) {
+        return new KVTaskClient(urls.get(server)).keys("").size();
+    }
+}
@@ -0,0 +1,56 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.FileBackedTaskManager;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Импорт спринта в FileBackedTaskManager: задачи по одной (проверка времени и запись файла на каждую)
+   против одного пакета createAll (одна проверка отсортированного пакета и одна запись).
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.BatchImportBenchmark [размеры...] */
+public class BatchImportBenchmark {
+
+    private static final LocalDateTime START = LocalDateTime.of(2121, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 5_000} : TimeValidationBenchmark.parseSizes(args);
+        Path dir = Files.createTempDirectory("kanban-batch");
+
+        System.out.printf("%10s %18s %18s%n", "size", "one by one ms", "createAll ms");
+        for (int size : sizes) {
+            File file = dir.resolve("board-" + size + ".csv").toFile();
+            long oneByOne = importTasks(file, size, false);
+            long batch = importTasks(file, size, true);
+            System.out.printf("%10d %18d %18d%n", size, oneByOne / 1_000_000, batch / 1_000_000);
+        }
+    }
+
+    private static long importTasks(File file, int size, boolean batch) throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(FileBackedTaskManager.getIdsFile(file).toPath());
+        Task.setCountTaskId(0);
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new Task(i + 1, "task" + i, "desc", TaskStatuses.NEW, START.plusHours(i), 60));
+        }
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        long start = System.nanoTime();
+        if (batch) {
+            manager.createAll(tasks);
+        } else {
+            for (Task task : tasks) {
+                manager.createTask(task);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        manager.close();
+        return elapsed;
+    }
+}
@@ -0,0 +1,76 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.taskmanager.TaskManager;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/* Масштабирование пропускной способности ConcurrentTaskManager от 1 до N потоков
+   (смесь: 90% чтений - просмотр по id и список задач, 10% обновлений).
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.ConcurrencyBenchmark [потоки...] */
+public class ConcurrencyBenchmark {
+
+    private static final int TASKS = 1_000;
+    private static final long DURATION_MILLIS = 2_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = args.length == 0
+                ? IntStream.of(1, 2, 4, 8, cores).distinct().sorted().toArray() : TimeValidationBenchmark.parseSizes(args);
+
+        Task.setCountTaskId(0);
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        for (int i = 0; i < TASKS; i++) {
+            manager.createTask(new Task("task" + i, "desc"));
+        }
+
+        System.out.printf("%8s %15s %12s%n", "threads", "ops/s", "speedup");
+        double single = 0;
+        for (int threads : threadCounts) {
+            double opsPerSecond = run(manager, threads);
+            if (single == 0) {
+                single = opsPerSecond;
+            }
+            System.out.printf("%8d %15.0f %12.2f%n", threads, opsPerSecond, opsPerSecond / single);
+        }
+    }
+
+    private static double run(TaskManager manager, int threads) throws InterruptedException {
+        long[] counts = new long[threads];
+        long deadline = System.nanoTime() + DURATION_MILLIS * 1_000_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                while (System.nanoTime() < deadline) {
+                    int id = 1 + random.nextInt(TASKS);
+                    int kind = random.nextInt(10);
+                    if (kind == 0) {
+                        manager.updateTask(new Task(id, "task", "updated", TaskStatuses.IN_PROGRESS));
+                    } else if (kind < 5) {
+                        manager.getTaskById(id);
+                    } else {
+                        manager.getListAllTasks();
+                    }
+                    ops++;
+                }
+                counts[index] = ops;
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            total += counts[t];
+        }
+        return total * 1_000.0 / DURATION_MILLIS;
+    }
+}
@@ -0,0 +1,56 @@
+package tasktracker.benchmark;
+
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.time.LocalDateTime;
+
+/* Стоимость изменения одной подзадачи в большом эпике: пересчет статуса, начала, конца и длительности эпика.
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.EpicAggregateBenchmark [размеры...] */
+public class EpicAggregateBenchmark {
+
+    private static final int OPERATIONS = 20_000;
+    private static final LocalDateTime START = LocalDateTime.of(2121, 1, 1, 0, 0);
+    private static final TaskStatuses[] STATUSES = TaskStatuses.values();
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10, 1_000, 10_000, 100_000}
+                : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%10s %16s %16s%n", "subtasks", "ns/update", "ns/remove+add");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            Epic epic = new Epic(1, "epic", "desc");
+            Subtask[] subtasks = new Subtask[size];
+            for (int i = 0; i < size; i++) {
+                subtasks[i] = subtask(i + 2, i, i);
+                epic.addSubtask(subtasks[i]);
+            }
+            measure(epic, subtasks, false); // прогрев
+            long update = measure(epic, subtasks, false);
+            long removeAdd = measure(epic, subtasks, true);
+            System.out.printf("%10d %16d %16d%n", size, update / OPERATIONS, removeAdd / OPERATIONS);
+        }
+    }
+
+    private static long measure(Epic epic, Subtask[] subtasks, boolean remove) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int index = (int) ((i * 2_654_435_761L) % subtasks.length);
+            Subtask updated = subtask(subtasks[index].getId(), index, i);
+            if (remove) {
+                epic.deleteSubtask(updated.getId());
+            }
+            epic.addSubtask(updated);
+            subtasks[index] = updated;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Subtask subtask(int id, int slot, int version) {
+        return new Subtask(id, "subtask", "desc", STATUSES[version % STATUSES.length], 1,
+                START.plusHours(slot), 30 + version % 30);
+    }
+}
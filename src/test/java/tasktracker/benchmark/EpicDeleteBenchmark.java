@@ -0,0 +1,46 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.InMemoryTaskManager;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Стоимость удаления одного эпика (вместе с его подзадачами) в зависимости от общего числа подзадач на доске.
+   У каждого эпика одинаковое число подзадач, поэтому удаление должно стоить одинаково на любой доске.
+   Запуск: java -Xmx3g -cp target/classes:target/test-classes tasktracker.benchmark.EpicDeleteBenchmark [размеры...] */
+public class EpicDeleteBenchmark {
+
+    private static final int SUBTASKS_PER_EPIC = 100;
+    private static final int DELETES = 200;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000}
+                : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%12s %18s%n", "subtasks", "us/removeEpicById");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            InMemoryTaskManager manager = new InMemoryTaskManager();
+            List<Epic> epics = new ArrayList<>();
+            for (int i = 0; i < size / SUBTASKS_PER_EPIC; i++) {
+                Epic epic = new Epic("epic" + i, "desc");
+                manager.createEpic(epic);
+                epics.add(epic);
+                for (int j = 0; j < SUBTASKS_PER_EPIC; j++) {
+                    manager.createSubtask(new Subtask("subtask" + j, "desc", epic));
+                }
+            }
+            // эпики удаляются вразброс, чтобы не зависеть от порядка обхода HashMap
+            final int step = Math.max(1, epics.size() / DELETES);
+            long start = System.nanoTime();
+            int deleted = 0;
+            for (int i = 0; i < epics.size() && deleted < DELETES; i += step, deleted++) {
+                manager.removeEpicById(epics.get(i).getId());
+            }
+            System.out.printf("%12d %18d%n", size, (System.nanoTime() - start) / deleted / 1_000);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tasktracker.benchmark;
+
+import tasktracker.historymanager.HistoryManager;
+import tasktracker.historymanager.InMemoryHistoryManager;
+import tasktracker.tasks.Task;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/* Память на запись истории, стоимость просмотра (перенос задачи в конец истории), повторного чтения
+   неизменной истории и чтения последних RECENT просмотров после каждого нового.
+   Сами задачи создаются заранее и в память истории не входят.
+   Запуск: java -Xmx3g -cp target/classes:target/test-classes tasktracker.benchmark.HistoryBenchmark [размеры...] */
+public class HistoryBenchmark {
+
+    private static final int VIEWS = 5_000_000;
+    private static final int READS = 1_000;
+    private static final int RECENT = 20;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000}
+                : TimeValidationBenchmark.parseSizes(args);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.printf("%10s %12s %12s %14s %14s %16s%n", "size", "B/entry", "ns/view", "alloc B/view",
+                "ns/getHistory", "ns/view+recent");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            Task[] tasks = new Task[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = new Task("task" + i, "desc");
+            }
+
+            long before = usedMemory();
+            HistoryManager history = new InMemoryHistoryManager(size);
+            for (Task task : tasks) {
+                history.addToHistory(task);
+            }
+            long bytes = usedMemory() - before;
+
+            Random random = new Random(42);
+            int[] views = new int[VIEWS];
+            for (int i = 0; i < VIEWS; i++) {
+                views[i] = random.nextInt(size);
+            }
+            view(history, tasks, views); // прогрев
+            long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long start = System.nanoTime();
+            view(history, tasks, views);
+            long nanos = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+
+            long sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                sink += history.getHistory().size();
+            }
+            long readNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                history.addToHistory(tasks[views[i]]);
+                sink += history.getLastViewed(RECENT).size();
+            }
+            long recentNanos = System.nanoTime() - start;
+
+            System.out.printf("%10d %12d %12.1f %14.2f %14d %16d%n", size, bytes / size, (double) nanos / VIEWS,
+                    (double) allocated / VIEWS, readNanos / READS, recentNanos / READS);
+            if (sink == 0) {
+                System.out.println(sink);
+            }
+            if (history.getHistory().size() != size) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private static void view(HistoryManager history, Task[] tasks, int[] views) {
+        for (int index : views) {
+            history.addToHistory(tasks[index]);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,99 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.ExecutorMode;
+import tasktracker.api.HttpTaskServer;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.taskmanager.FileBackedTaskManager;
+import tasktracker.tasks.Task;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Нагрузочный тест HttpTaskServer: p50/p99 задержки для каждого режима исполнителя.
+   Смесь: 90% GET задачи по id, 10% POST новой задачи (с записью снимка на каждое изменение).
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.HttpLoadBenchmark [клиентов] */
+public class HttpLoadBenchmark {
+
+    private static final int TASKS = 2_000;
+    private static final int REQUESTS_PER_CLIENT = 200;
+    private static final int SERVER_THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length == 0 ? 32 : Integer.parseInt(args[0]);
+        Path dir = Files.createTempDirectory("kanban-http-load");
+
+        System.out.printf("%14s %10s %10s %10s %12s%n", "mode", "p50 ms", "p99 ms", "max ms", "requests/s");
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            Task.setCountTaskId(0);
+            FileBackedTaskManager fileManager = new FileBackedTaskManager(dir.resolve(mode + ".csv").toFile(), true);
+            for (int i = 0; i < TASKS; i++) {
+                fileManager.createTask(new Task("task" + i, "desc"));
+            }
+            HttpTaskServer server = new HttpTaskServer(new ConcurrentTaskManager(fileManager), 0, mode,
+                    SERVER_THREADS);
+            server.start();
+            try {
+                run(server, clients);
+            } finally {
+                server.stop(); // закрывает и fileManager
+            }
+        }
+    }
+
+    private static void run(HttpTaskServer server, int clients) throws Exception {
+        String base = "http://localhost:" + server.getPort() + "/tasks/task";
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        long start = System.nanoTime();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(clientPool.submit(() -> {
+                long[] latencies = new long[REQUESTS_PER_CLIENT];
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                    HttpRequest request = nextRequest(base);
+                    long begin = System.nanoTime();
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[clients * REQUESTS_PER_CLIENT];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(futures.get(c).get(), 0, all, c * REQUESTS_PER_CLIENT, REQUESTS_PER_CLIENT);
+        }
+        long elapsed = System.nanoTime() - start;
+        clientPool.shutdown();
+
+        Arrays.sort(all);
+        System.out.printf("%14s %10.2f %10.2f %10.2f %12.0f%n", server.getExecutor().getMode(),
+                percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6,
+                all.length * 1e9 / elapsed);
+    }
+
+    private static HttpRequest nextRequest(String base) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(10) == 0) {
+            String body = "{\"name\":\"load\",\"description\":\"desc\",\"status\":\"NEW\",\"duration\":0}";
+            return HttpRequest.newBuilder(URI.create(base)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + "?id=" + (1 + random.nextInt(TASKS)))).GET().build();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+    }
+}
@@ -0,0 +1,113 @@
+package tasktracker.benchmark;
+
+import tasktracker.collections.IntObjectMap;
+import tasktracker.tasks.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/* Память на запись, скорость поиска и удаления с повторной вставкой: HashMap<Integer, Task> против IntObjectMap<Task> для id задач.
+   Сами задачи создаются заранее и в память таблиц не входят.
+   Запуск: java -Xmx3g -cp target/classes:target/test-classes tasktracker.benchmark.IntMapBenchmark [размеры...] */
+public class IntMapBenchmark {
+
+    private static final int LOOKUPS = 10_000_000;
+    private static final int REMOVES = 1_000_000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000}
+                : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%10s %16s %16s %18s %18s %18s %18s%n", "size", "HashMap B/entry", "IntMap B/entry",
+                "HashMap ns/lookup", "IntMap ns/lookup", "HashMap ns/remove", "IntMap ns/remove");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            Task[] tasks = new Task[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = new Task("task" + i, "desc");
+            }
+
+            long before = usedMemory();
+            HashMap<Integer, Task> hashMap = new HashMap<>();
+            for (Task task : tasks) {
+                hashMap.put(task.getId(), task);
+            }
+            long hashMapBytes = usedMemory() - before;
+
+            before = usedMemory();
+            IntObjectMap<Task> intMap = new IntObjectMap<>();
+            for (Task task : tasks) {
+                intMap.put(task.getId(), task);
+            }
+            long intMapBytes = usedMemory() - before;
+
+            lookups(hashMap, intMap, size); // прогрев
+            long[] nanos = lookups(hashMap, intMap, size);
+            removes(hashMap, intMap, tasks); // прогрев
+            long[] removeNanos = removes(hashMap, intMap, tasks);
+            System.out.printf("%10d %16d %16d %18.1f %18.1f %18.1f %18.1f%n", size, hashMapBytes / size,
+                    intMapBytes / size, (double) nanos[0] / LOOKUPS, (double) nanos[1] / LOOKUPS,
+                    (double) removeNanos[0] / REMOVES, (double) removeNanos[1] / REMOVES);
+            if (hashMap.size() != intMap.size()) {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    // Поиск по случайным существующим id; сумма не дает JIT выбросить цикл
+    private static long[] lookups(Map<Integer, Task> hashMap, IntObjectMap<Task> intMap, int size) {
+        Random random = new Random(42);
+        int[] ids = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            ids[i] = 1 + random.nextInt(size);
+        }
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int id : ids) {
+            sink += hashMap.get(id).getId();
+        }
+        long hashMapNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int id : ids) {
+            sink += intMap.get(id).getId();
+        }
+        long intMapNanos = System.nanoTime() - start;
+        if (sink == 0) {
+            System.out.println(sink);
+        }
+        return new long[]{hashMapNanos, intMapNanos};
+    }
+
+    // Удаление случайной задачи и ее повторная вставка (как удаление из истории и новый просмотр)
+    private static long[] removes(Map<Integer, Task> hashMap, IntObjectMap<Task> intMap, Task[] tasks) {
+        Random random = new Random(7);
+        int[] indexes = new int[REMOVES];
+        for (int i = 0; i < REMOVES; i++) {
+            indexes[i] = random.nextInt(tasks.length);
+        }
+        long start = System.nanoTime();
+        for (int index : indexes) {
+            final Task task = tasks[index];
+            hashMap.remove(task.getId());
+            hashMap.put(task.getId(), task);
+        }
+        long hashMapNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int index : indexes) {
+            final Task task = tasks[index];
+            intMap.remove(task.getId());
+            intMap.put(task.getId(), task);
+        }
+        long intMapNanos = System.nanoTime() - start;
+        return new long[]{hashMapNanos, intMapNanos};
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,115 @@
+package tasktracker.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import tasktracker.api.ExecutorMode;
+import tasktracker.api.HttpTaskServer;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/* Ответ GET /tasks на больших досках: выделение памяти на запрос при сериализации в строку (прежний способ)
+   и потоковой записи через JsonWriter, плюс задержка запроса к серверу целиком.
+   Запуск: java -Xmx2g -cp target/classes:target/test-classes:gson.jar tasktracker.benchmark.JsonResponseBenchmark */
+public class JsonResponseBenchmark {
+
+    private static final int REPEATS = 20;
+    private static final OutputStream NULL_STREAM = OutputStream.nullOutputStream();
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000} : TimeValidationBenchmark.parseSizes(args);
+        Gson gson = HttpTaskServer.getGson();
+
+        System.out.printf("%10s %14s %14s %14s %14s %14s %14s%n", "tasks", "string MB/req", "stream MB/req",
+                "string ms", "stream ms", "GET p50 ms", "GET p99 ms");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            ConcurrentTaskManager manager = new ConcurrentTaskManager();
+            fillBoard(manager, size);
+            List<Task> body = manager.getAllTasksAllTypes();
+
+            long[] asString = measure(() -> NULL_STREAM.write(gson.toJson(body).getBytes(StandardCharsets.UTF_8)));
+            long[] streamed = measure(() -> {
+                JsonWriter writer = new JsonWriter(new BufferedWriter(
+                        new OutputStreamWriter(NULL_STREAM, StandardCharsets.UTF_8), 64 * 1024));
+                gson.toJson(body, body.getClass(), writer);
+                writer.flush();
+            });
+            double[] latency = measureServer(manager);
+
+            System.out.printf("%10d %14.1f %14.1f %14.1f %14.1f %14.1f %14.1f%n", size,
+                    asString[0] / 1e6, streamed[0] / 1e6, asString[1] / 1e6, streamed[1] / 1e6,
+                    latency[0], latency[1]);
+        }
+    }
+
+    private static void fillBoard(ConcurrentTaskManager manager, int size) {
+        for (int i = 0; i < size; i++) {
+            if (i % 10 == 0) {
+                Epic epic = new Epic("epic" + i, "desc");
+                manager.createEpic(epic);
+                manager.createSubtask(new Subtask("subtask" + i, "desc", epic));
+            } else {
+                manager.createTask(new Task("task" + i, "описание задачи " + i));
+            }
+        }
+    }
+
+    // Возвращает {байт выделено на запрос, нс на запрос} по текущему потоку
+    private static long[] measure(Action action) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < 3; i++) {
+            action.run(); // прогрев
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEATS; i++) {
+            action.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new long[]{allocated / REPEATS, nanos / REPEATS};
+    }
+
+    private static double[] measureServer(ConcurrentTaskManager manager) throws Exception {
+        HttpTaskServer server = new HttpTaskServer(manager, 0, ExecutorMode.FIXED, 4);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.getPort() + "/tasks")).GET().build();
+            long[] latencies = new long[REPEATS];
+            for (int i = -3; i < REPEATS; i++) {
+                long start = System.nanoTime();
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (i >= 0) {
+                    latencies[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(latencies);
+            return new double[]{latencies[REPEATS / 2] / 1e6, latencies[REPEATS - 1] / 1e6};
+        } finally {
+            server.stop();
+        }
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,104 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.KVServer;
+import tasktracker.api.KVTaskClient;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/* Синхронизация набора ключей с локальным KVServer через KVTaskClient: по запросу на ключ последовательно
+   (sequential), по запросу на ключ параллельно по пулу соединений (pipelined), пакетами /save-batch и /load-batch
+   (batch). Время одной синхронизации (мс) и пропускная способность (ключей/с), значения ~100 байт, как строка CSV.
+   Запуск: java -cp target/classes:target/test-classes:<gson.jar> tasktracker.benchmark.KVBatchBenchmark [ключей] */
+public class KVBatchBenchmark {
+
+    private static final int ROUNDS = 10;
+    private static final String VALUE = "1,TASK,task name,NEW,task description,2030-01-01T10:00,30,".repeat(2);
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{1_000} : TimeValidationBenchmark.parseSizes(args);
+        Path dir = Files.createTempDirectory("kv-batch-benchmark");
+        KVServer server = new KVServer(0, dir.toFile(), 8);
+        server.start();
+        try {
+            KVTaskClient client = new KVTaskClient("http://localhost:" + server.getPort());
+            System.out.printf("%8s %10s %12s %14s %12s %14s%n", "keys", "mode", "save ms", "save keys/s",
+                    "load ms", "load keys/s");
+            for (int size : sizes) {
+                List<String> keys = new ArrayList<>(size);
+                Map<String, String> values = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    keys.add("task/" + i);
+                    values.put("task/" + i, VALUE);
+                }
+                for (String mode : List.of("sequential", "pipelined", "batch")) {
+                    run(client, mode, keys, values); // прогрев
+                    long[] time = run(client, mode, keys, values);
+                    System.out.printf("%8d %10s %12.1f %14.0f %12.1f %14.0f%n", size, mode,
+                            time[0] / 1e6 / ROUNDS, size * ROUNDS * 1e9 / time[0],
+                            time[1] / 1e6 / ROUNDS, size * ROUNDS * 1e9 / time[1]);
+                }
+            }
+        } finally {
+            server.stop();
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            dir.toFile().delete();
+        }
+    }
+
+    // Суммарное время ROUNDS сохранений и ROUNDS загрузок всего набора
+    private static long[] run(KVTaskClient client, String mode, List<String> keys, Map<String, String> values) {
+        long save = 0;
+        long load = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            switch (mode) {
+                case "sequential":
+                    values.forEach(client::put);
+                    break;
+                case "pipelined":
+                    List<CompletableFuture<Void>> saves = new ArrayList<>(keys.size());
+                    values.forEach((key, value) -> saves.add(client.putAsync(key, value)));
+                    CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])).join();
+                    break;
+                default:
+                    client.putAll(values);
+            }
+            save += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int loaded = 0;
+            switch (mode) {
+                case "sequential":
+                    for (String key : keys) {
+                        loaded += client.load(key) == null ? 0 : 1;
+                    }
+                    break;
+                case "pipelined":
+                    List<CompletableFuture<String>> loads = new ArrayList<>(keys.size());
+                    for (String key : keys) {
+                        loads.add(client.loadAsync(key));
+                    }
+                    for (CompletableFuture<String> future : loads) {
+                        loaded += future.join() == null ? 0 : 1;
+                    }
+                    break;
+                default:
+                    loaded = client.loadAll(keys).size();
+            }
+            load += System.nanoTime() - start;
+            if (loaded != keys.size()) {
+                throw new IllegalStateException("Загружено " + loaded + " из " + keys.size());
+            }
+        }
+        return new long[]{save, load};
+    }
+}
@@ -0,0 +1,93 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.KVServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/* Пропускная способность KVServer: сохранение и загрузка значений 1 КБ и 1 МБ из CLIENTS параллельных клиентов,
+   сохранения с записью в сегменты хранилища на диске.
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.KVServerBenchmark [клиентов] */
+public class KVServerBenchmark {
+
+    private static final int SERVER_THREADS = 8;
+    private static final int[][] VALUES = {{1024, 4_000}, {1024 * 1024, 128}}; // размер значения, операций
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length == 0 ? 16 : Integer.parseInt(args[0]);
+        Path dir = Files.createTempDirectory("kv-server-benchmark");
+        KVServer server = new KVServer(0, dir.toFile(), SERVER_THREADS);
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+
+        System.out.printf("%10s %14s %12s %14s %12s%n", "value", "save ops/s", "save MB/s", "load ops/s", "load MB/s");
+        try {
+            for (int[] value : VALUES) {
+                byte[] body = new byte[value[0]];
+                Arrays.fill(body, (byte) 'x');
+                final int operations = value[1];
+                run(clientPool, operations, i -> save(client, base, "key" + i, body)); // прогрев
+                long save = run(clientPool, operations, i -> save(client, base, "key" + i, body));
+                run(clientPool, operations, i -> load(client, base, "key" + i));
+                long load = run(clientPool, operations, i -> load(client, base, "key" + i));
+                System.out.printf("%10d %14.0f %12.1f %14.0f %12.1f%n", value[0], operations * 1e9 / save,
+                        (double) operations * value[0] / save * 1e3, operations * 1e9 / load,
+                        (double) operations * value[0] / load * 1e3);
+            }
+        } finally {
+            clientPool.shutdown();
+            server.stop();
+        }
+    }
+
+    private interface Operation {
+        void run(int index) throws Exception;
+    }
+
+    private static long run(ExecutorService pool, int operations, Operation operation) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            final int index = i;
+            futures.add(pool.submit(() -> {
+                operation.run(index);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void save(HttpClient client, String base, String key, byte[] body) throws Exception {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base + "/save/" + key
+                + "?API_TOKEN=DEBUG")).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        check(response.statusCode());
+    }
+
+    private static void load(HttpClient client, String base, String key) throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(base + "/load/" + key
+                + "?API_TOKEN=DEBUG")).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        check(response.statusCode());
+    }
+
+    private static void check(int status) {
+        if (status != 200) {
+            throw new IllegalStateException("Ответ " + status);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.KVStore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/* Хранилище KVServer на сегментах: память кучи на ключ (значения на диске, в памяти только индекс), усиление записи
+   (байт записано на диск, вместе со сжатиями, на байт записей клиента) при 3 перезаписях каждого ключа в случайном
+   порядке, задержка чтения случайного ключа (p50/p99).
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.KVStoreBenchmark [ключей] */
+public class KVStoreBenchmark {
+
+    private static final int VALUE_SIZE = 1024;
+    private static final int OVERWRITES = 3;
+    private static final int READS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000} : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%8s %12s %10s %12s %12s %12s %12s%n", "keys", "heap B/key", "write amp", "compactions",
+                "disk MB", "read p50 ns", "read p99 ns");
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) throws Exception {
+        Path dir = Files.createTempDirectory("kv-store-benchmark");
+        Random random = new Random(1);
+        KVStore store = new KVStore(dir.toFile());
+        try {
+            long before = usedHeap();
+            long payload = 0;
+            for (int i = 0; i < size; i++) {
+                payload += put(store, random, "task/" + i);
+            }
+            long heapPerKey = (usedHeap() - before) / size;
+            for (int i = 0; i < OVERWRITES * size; i++) {
+                payload += put(store, random, "task/" + random.nextInt(size));
+            }
+
+            long[] reads = new long[READS];
+            for (int i = 0; i < READS; i++) {
+                String key = "task/" + random.nextInt(size);
+                long start = System.nanoTime();
+                store.get(key);
+                reads[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(reads);
+
+            System.out.printf("%8d %12d %10.2f %12d %12.1f %12d %12d%n", size, heapPerKey,
+                    (double) store.getWrittenBytes() / payload, store.getCompactions(),
+                    store.getDiskBytes() / 1e6, reads[READS / 2], reads[READS * 99 / 100]);
+        } finally {
+            store.close();
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            dir.toFile().delete();
+        }
+    }
+
+    // Размер записи клиента: заголовок, ключ, значение, CRC
+    private static long put(KVStore store, Random random, String key) {
+        byte[] value = new byte[VALUE_SIZE];
+        random.nextBytes(value);
+        store.put(key, value);
+        return 8 + key.length() + VALUE_SIZE + 4;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        Thread.sleep(200);
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,112 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.KVServer;
+import tasktracker.api.KVTaskClient;
+import tasktracker.taskmanager.InMemoryTaskManager;
+import tasktracker.taskmanager.KVTaskManager;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/* KVTaskManager против локального KVServer: изменение задачи с отправкой только ее ключа (delta) против отправки
+   всей доски одним значением после каждого изменения (blob, как FileBackedTaskManager.save()), и загрузка доски
+   при старте параллельными запросами против последовательных.
+   Запуск: java -cp target/classes:target/test-classes:<gson.jar> tasktracker.benchmark.KVTaskManagerBenchmark [размеры] */
+public class KVTaskManagerBenchmark {
+
+    private static final int MUTATIONS = 300;
+    private static final int SUBTASKS_PER_EPIC = 4;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{100, 1_000, 5_000} : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%8s %16s %16s %18s %18s%n", "size", "delta us/update", "blob us/update",
+                "parallel load ms", "sequential load ms");
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) throws Exception {
+        Path dir = Files.createTempDirectory("kv-manager-benchmark");
+        KVServer server = new KVServer(0, dir.toFile(), 8);
+        server.start();
+        String url = "http://localhost:" + server.getPort();
+        try {
+            KVTaskClient client = new KVTaskClient(url);
+            KVTaskManager manager = new KVTaskManager(client);
+            InMemoryTaskManager blobManager = new InMemoryTaskManager();
+            List<Task> board = board(size);
+            manager.createAll(board);
+            blobManager.createAll(board(size));
+
+            updates(manager, null); // прогрев
+            long delta = updates(manager, null);
+            updates(blobManager, client);
+            long blob = updates(blobManager, client);
+
+            new KVTaskManager(client);
+            long start = System.nanoTime();
+            new KVTaskManager(client);
+            long parallel = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String prefix : List.of("task/", "epic/", "subtask/")) {
+                for (String key : client.keys(prefix)) {
+                    client.load(key);
+                }
+            }
+            client.load("history");
+            long sequential = System.nanoTime() - start;
+
+            System.out.printf("%8d %16.0f %16.0f %18.1f %18.1f%n", size, delta / 1e3 / MUTATIONS,
+                    blob / 1e3 / MUTATIONS, parallel / 1e6, sequential / 1e6);
+        } finally {
+            server.stop();
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            dir.toFile().delete();
+        }
+    }
+
+    // Половина доски - задачи, половина - эпики с подзадачами
+    private static List<Task> board(int size) {
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size / 2; i++) {
+            tasks.add(new Task("task " + i, "description " + i));
+        }
+        while (tasks.size() < size) {
+            Epic epic = new Epic("epic", "description");
+            tasks.add(epic);
+            for (int j = 0; j < SUBTASKS_PER_EPIC && tasks.size() < size; j++) {
+                tasks.add(new Subtask("subtask " + j, "description " + j, epic));
+            }
+        }
+        return tasks;
+    }
+
+    // blobClient != null - после каждого изменения вся доска отправляется одним значением
+    private static long updates(InMemoryTaskManager manager, KVTaskClient blobClient) {
+        List<Task> tasks = manager.getListAllTasks();
+        long start = System.nanoTime();
+        for (int i = 0; i < MUTATIONS; i++) {
+            Task task = tasks.get(i % tasks.size());
+            manager.updateTask(new Task(task.getId(), task.getName(), "updated " + i,
+                    i % 2 == 0 ? TaskStatuses.IN_PROGRESS : TaskStatuses.DONE));
+            if (blobClient != null) {
+                blobClient.put("board", manager.getAllTasksAllTypes().stream()
+                        .map(Task::toString)
+                        .collect(Collectors.joining("\n")));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,59 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.InMemoryTaskManager;
+import tasktracker.tasks.Task;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/* Стоимость одной страницы (limit задач после случайного курсора) против копирования всего списка
+   в зависимости от размера доски. Страница должна стоить одинаково на любой доске.
+   Запуск: java -Xmx2g -cp target/classes:target/test-classes tasktracker.benchmark.PaginationBenchmark [размеры...] */
+public class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGES = 10_000;
+    private static final int FULL_LISTS = 20;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : TimeValidationBenchmark.parseSizes(args);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.printf("%10s %14s %14s %16s %16s%n", "size", "page us", "page KB", "full list us", "full list KB");
+        for (int size : sizes) {
+            Task.setCountTaskId(0);
+            InMemoryTaskManager manager = new InMemoryTaskManager();
+            for (int i = 0; i < size; i++) {
+                manager.createTask(new Task("task" + i, "desc"));
+            }
+            Random random = new Random(42);
+            long sink = 0;
+
+            for (int i = 0; i < PAGES; i++) { // прогрев
+                sink += manager.getTasksPage(random.nextInt(size), PAGE_SIZE).size();
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < PAGES; i++) {
+                sink += manager.getTasksPage(random.nextInt(size), PAGE_SIZE).size();
+            }
+            long pageNanos = (System.nanoTime() - start) / PAGES;
+            long pageBytes = (threads.getThreadAllocatedBytes(threadId) - allocated) / PAGES;
+
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < FULL_LISTS; i++) {
+                List<Task> all = manager.getListAllTasks();
+                sink += all.size();
+            }
+            long fullNanos = (System.nanoTime() - start) / FULL_LISTS;
+            long fullBytes = (threads.getThreadAllocatedBytes(threadId) - allocated) / FULL_LISTS;
+
+            System.out.printf("%10d %14.1f %14.1f %16.1f %16.1f  (%d)%n", size, pageNanos / 1e3, pageBytes / 1e3,
+                    fullNanos / 1e3, fullBytes / 1e3, sink);
+        }
+    }
+}
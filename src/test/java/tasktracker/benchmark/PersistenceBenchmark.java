@@ -0,0 +1,64 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.DurabilityPolicy;
+import tasktracker.taskmanager.FileBackedTaskManager;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* Замер стоимости одной записи FileBackedTaskManager в зависимости от размера доски:
+   полная перезапись файла против журнала изменений.
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.PersistenceBenchmark [размеры...] */
+public class PersistenceBenchmark {
+
+    private static final int OPERATIONS = 200;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 10_000, 100_000} : TimeValidationBenchmark.parseSizes(args);
+        Path dir = Files.createTempDirectory("kanban-persistence");
+
+        System.out.printf("%10s %22s %22s %22s%n", "size", "rewrite us/update", "journal us/update",
+                "write-behind us/update");
+        for (int size : sizes) {
+            File file = dir.resolve("board-" + size + ".csv").toFile();
+            fillBoard(file, size);
+
+            long rewrite = measureUpdates(FileBackedTaskManager.loadFromFile(file, false), size);
+            fillBoard(file, size);
+            long journal = measureUpdates(FileBackedTaskManager.loadFromFile(file, true), size);
+            fillBoard(file, size);
+            long writeBehind = measureUpdates(
+                    FileBackedTaskManager.loadFromFile(file, true, DurabilityPolicy.INTERVAL), size);
+
+            System.out.printf("%10d %22d %22d %22d%n", size, rewrite / OPERATIONS / 1_000,
+                    journal / OPERATIONS / 1_000, writeBehind / OPERATIONS / 1_000);
+        }
+    }
+
+    // Наполняет файл доской нужного размера (через журнал, чтобы не перезаписывать файл на каждую задачу)
+    private static void fillBoard(File file, int size) throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(FileBackedTaskManager.getJournalFile(file).toPath());
+        Task.setCountTaskId(0);
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, true);
+        for (int i = 0; i < size; i++) {
+            manager.createTask(new Task("task" + i, "desc"));
+        }
+        manager.save();
+    }
+
+    // Время включает финальное подтверждение записи (close), чтобы фоновая запись не выглядела бесплатной
+    private static long measureUpdates(FileBackedTaskManager manager, int size) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int id = 1 + i % size;
+            manager.updateTask(new Task(id, "task" + id, "updated", TaskStatuses.IN_PROGRESS));
+        }
+        manager.close();
+        return System.nanoTime() - start;
+    }
+}
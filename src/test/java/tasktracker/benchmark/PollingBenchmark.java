@@ -0,0 +1,74 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.ExecutorMode;
+import tasktracker.api.HttpTaskServer;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/* Опрос GET /tasks дашбордами: сколько байт и процессорного времени экономят ETag и 304.
+   Каждый клиент опрашивает доску, а раз в UPDATE_EVERY запросов одна задача меняется.
+   Запуск: java -cp target/classes:target/test-classes:gson.jar tasktracker.benchmark.PollingBenchmark [задач] */
+public class PollingBenchmark {
+
+    private static final int POLLS = 400;
+    private static final int UPDATE_EVERY = 50;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length == 0 ? 10_000 : Integer.parseInt(args[0]);
+        Task.setCountTaskId(0);
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        for (int i = 0; i < size; i++) {
+            manager.createTask(new Task("task" + i, "desc"));
+        }
+        HttpTaskServer server = new HttpTaskServer(manager, 0, ExecutorMode.FIXED, 4);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/tasks/task");
+            poll(client, uri, manager, false); // прогрев
+            System.out.printf("%14s %12s %14s %12s%n", "mode", "MB received", "CPU ms total", "ms/poll");
+            for (boolean conditional : new boolean[]{false, true}) {
+                long cpu = processCpuNanos();
+                long start = System.nanoTime();
+                long bytes = poll(client, uri, manager, conditional);
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%14s %12.1f %14d %12.2f%n", conditional ? "If-None-Match" : "plain",
+                        bytes / 1e6, (processCpuNanos() - cpu) / 1_000_000, elapsed / 1e6 / POLLS);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long poll(HttpClient client, URI uri, ConcurrentTaskManager manager, boolean conditional)
+            throws Exception {
+        long bytes = 0;
+        String etag = null;
+        for (int i = 0; i < POLLS; i++) {
+            if (i % UPDATE_EVERY == 0) {
+                manager.updateTask(new Task(1, "task", "updated " + i, TaskStatuses.IN_PROGRESS));
+            }
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+            if (conditional && etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            bytes += response.body().length;
+            etag = response.headers().firstValue("ETag").orElse(null);
+        }
+        return bytes;
+    }
+
+    // Процессорное время всего процесса (сервер и клиент в одном процессе, клиентская часть одинакова в обоих режимах)
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+}
@@ -0,0 +1,70 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.FileBackedTaskManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/* Замер времени запуска (loadFromFile) для снимков разного размера.
+   Запуск: java -Xmx2g -cp target/classes:target/test-classes tasktracker.benchmark.RecoveryBenchmark [строк...] */
+public class RecoveryBenchmark {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2300, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : TimeValidationBenchmark.parseSizes(args);
+        Path dir = Files.createTempDirectory("kanban-recovery");
+
+        System.out.printf("%10s %12s %12s %14s%n", "rows", "file MB", "load ms", "rows/s");
+        for (int rows : sizes) {
+            File file = dir.resolve("snapshot-" + rows + ".csv").toFile();
+            writeSnapshot(file, rows);
+
+            System.gc();
+            long start = System.nanoTime();
+            FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file);
+            long nanos = System.nanoTime() - start;
+
+            System.out.printf("%10d %12.1f %12d %14d  (prioritized: %d)%n", rows, file.length() / 1e6,
+                    nanos / 1_000_000, rows * 1_000_000_000L / nanos, manager.getPrioritizedTasks().size());
+            Files.delete(file.toPath());
+        }
+    }
+
+    /* Снимок: задачи по часу подряд, каждая десятая строка - эпик, за которым идут его подзадачи.
+       Порядок строк как в save(): сначала задачи, потом эпики, потом подзадачи. */
+    static void writeSnapshot(File file, int rows) throws IOException {
+        int epics = rows / 10;
+        int subtasks = epics * 4;
+        int tasks = rows - epics - subtasks;
+        int hour = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id,type,name,status,description,startTime,duration,epic\n");
+            for (int id = 1; id <= tasks; id++) {
+                writer.write(id + ",TASK,task" + id + ",NEW,desc," + time(hour++) + ",60,\n");
+            }
+            for (int i = 0; i < epics; i++) {
+                int id = tasks + 1 + i;
+                writer.write(id + ",EPIC,epic" + id + ",NEW,desc,null,0,\n");
+            }
+            for (int i = 0; i < subtasks; i++) {
+                int id = tasks + epics + 1 + i;
+                int epicId = tasks + 1 + i / 4;
+                writer.write(id + ",SUBTASK,subtask" + id + ",NEW,desc," + time(hour++) + ",60," + epicId + "\n");
+            }
+            writer.write("\n");
+            writer.write("1,2,3");
+        }
+    }
+
+    private static String time(int hour) {
+        return BASE_TIME.plusHours(hour).format(FORMATTER);
+    }
+}
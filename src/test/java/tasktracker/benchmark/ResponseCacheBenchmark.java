@@ -0,0 +1,90 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.ExecutorMode;
+import tasktracker.api.HttpTaskServer;
+import tasktracker.api.ResponseCache;
+import tasktracker.taskmanager.ConcurrentTaskManager;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Горячие GET без If-None-Match (клиенты без ETag): кэш готовых ответов против сериализации на каждый запрос.
+   Между запросами обновляются подзадачи одного эпика - остальные эпики и список задач из кэша не вытесняются.
+   Запуск: java -cp target/classes:target/test-classes:gson.jar tasktracker.benchmark.ResponseCacheBenchmark [задач] */
+public class ResponseCacheBenchmark {
+
+    private static final int REQUESTS = 2_000;
+    private static final int EPICS = 20;
+    private static final int UPDATE_EVERY = 20;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length == 0 ? 2_000 : Integer.parseInt(args[0]);
+        System.out.printf("%10s %12s %12s %10s %10s%n", "cache", "CPU ms", "ms/request", "hits", "misses");
+        for (long cacheBytes : new long[]{0, 64L * 1024 * 1024}) {
+            run(size, cacheBytes);
+        }
+    }
+
+    private static void run(int size, long cacheBytes) throws Exception {
+        Task.setCountTaskId(0);
+        ConcurrentTaskManager manager = new ConcurrentTaskManager();
+        List<Epic> epics = new ArrayList<>();
+        List<Subtask> subtasks = new ArrayList<>();
+        for (int i = 0; i < EPICS; i++) {
+            Epic epic = new Epic("epic" + i, "desc");
+            manager.createEpic(epic);
+            epics.add(epic);
+        }
+        for (int i = 0; i < size; i++) {
+            manager.createTask(new Task("task" + i, "desc"));
+            Subtask subtask = new Subtask("subtask" + i, "desc", epics.get(i % EPICS));
+            manager.createSubtask(subtask);
+            subtasks.add(subtask);
+        }
+        HttpTaskServer server = new HttpTaskServer(manager, 0, ExecutorMode.FIXED, 4, cacheBytes);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort();
+            requests(client, base, manager, subtasks); // прогрев
+            long cpu = processCpuNanos();
+            long start = System.nanoTime();
+            requests(client, base, manager, subtasks);
+            long elapsed = System.nanoTime() - start;
+            ResponseCache cache = server.getCache();
+            System.out.printf("%10s %12d %12.3f %10d %10d%n", cacheBytes == 0 ? "off" : cacheBytes / 1024 / 1024 + "MB",
+                    (processCpuNanos() - cpu) / 1_000_000, elapsed / 1e6 / REQUESTS, cache.getHits(),
+                    cache.getMisses());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void requests(HttpClient client, String base, ConcurrentTaskManager manager,
+                                 List<Subtask> subtasks) throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            if (i % UPDATE_EVERY == 0) {
+                Subtask subtask = subtasks.get(0); // всегда подзадача первого эпика
+                manager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(), "updated " + i,
+                        TaskStatuses.IN_PROGRESS, subtask.getEpicId()));
+            }
+            String path = i % 2 == 0 ? "/tasks/task" : "/tasks/subtask/epic?id=" + (1 + i % EPICS);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+}
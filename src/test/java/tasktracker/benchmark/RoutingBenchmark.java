@@ -0,0 +1,66 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.Response;
+import tasktracker.api.RouteHandler;
+import tasktracker.api.Router;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/* Накладные расходы маршрутизации на запрос: прежняя цепочка Pattern.matches с разбором id через stream
+   против таблицы маршрутов Router и Router.intParam. Сеть не участвует.
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.RoutingBenchmark */
+public class RoutingBenchmark {
+
+    private static final int ITERATIONS = 2_000_000;
+    private static final String[] PATHS = {"/tasks/task", "/tasks/epic", "/tasks/subtask", "/tasks/subtask/epic",
+            "/tasks", "/tasks/history"};
+    private static final String QUERY = "id=12345";
+
+    public static void main(String[] args) {
+        RouteHandler handler = (h, query) -> Response.text(200, "");
+        Router router = new Router();
+        for (String path : PATHS) {
+            router.get(path, handler);
+        }
+
+        long sink = 0;
+        for (int round = 0; round < 3; round++) { // первые раунды - прогрев
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += regexRoute(PATHS[i % PATHS.length], QUERY);
+            }
+            long regex = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += router.find("GET", PATHS[i % PATHS.length]) == null ? 0 : Router.intParam(QUERY, "id");
+            }
+            long table = System.nanoTime() - start;
+
+            System.out.printf("round %d: regex %6.1f ns/request, router %6.1f ns/request%n", round,
+                    (double) regex / ITERATIONS, (double) table / ITERATIONS);
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    // Прежний способ: каждое выражение компилируется заново на каждый вызов
+    private static int regexRoute(String path, String query) {
+        if (Pattern.matches("^/tasks/task$", path) || Pattern.matches("^/tasks/epic$", path)
+                || Pattern.matches("^/tasks/subtask$", path) || Pattern.matches("^/tasks/subtask/epic$", path)) {
+            return idFromQuery(query.split("&"));
+        }
+        if (Pattern.matches("^/tasks$", path) || Pattern.matches("^/tasks/history$", path)) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private static int idFromQuery(String[] params) {
+        return Arrays.stream(params)
+                .filter(i -> i.matches("^id=\\d+"))
+                .map(i -> i.split("="))
+                .mapToInt(i -> Integer.parseInt(i[1]))
+                .findAny().getAsInt();
+    }
+}
@@ -0,0 +1,103 @@
+package tasktracker.benchmark;
+
+import tasktracker.api.KVServer;
+import tasktracker.api.ShardedKVClient;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/* ShardedKVClient поверх 1, 2, 4 ... KVServer в одном процессе: пропускная способность одиночных сохранений и
+   загрузок из CLIENTS потоков, время пакетных putAll/loadAll набора KEYS ключей (пакеты к серверам идут
+   параллельно), затем добавление еще одного сервера: сколько ключей переехало и за сколько.
+   Запуск: java -cp target/classes:target/test-classes:<gson.jar> tasktracker.benchmark.ShardedKVBenchmark [серверов] */
+public class ShardedKVBenchmark {
+
+    private static final int CLIENTS = 16;
+    private static final int OPERATIONS = 8_000;
+    private static final int KEYS = 20_000;
+    private static final int SERVER_THREADS = 4;
+    private static final String VALUE = "1,TASK,task name,NEW,task description,2030-01-01T10:00,30,".repeat(2);
+
+    public static void main(String[] args) throws Exception {
+        int[] shards = args.length == 0 ? new int[]{1, 2, 4} : TimeValidationBenchmark.parseSizes(args);
+
+        System.out.printf("%8s %12s %12s %12s %12s %10s %14s%n", "servers", "put ops/s", "load ops/s",
+                "putAll ms", "loadAll ms", "moved %", "addNode ms");
+        for (int count : shards) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) throws Exception {
+        Path dir = Files.createTempDirectory("kv-sharded-benchmark");
+        List<KVServer> servers = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i <= count; i++) {
+            KVServer server = new KVServer(0, dir.resolve("kv" + i).toFile(), SERVER_THREADS);
+            server.start();
+            servers.add(server);
+            urls.add("http://localhost:" + server.getPort());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            ShardedKVClient client = new ShardedKVClient(urls.subList(0, count));
+            run(pool, i -> client.put("task/" + i, VALUE)); // прогрев
+            long put = run(pool, i -> client.put("task/" + i, VALUE));
+            run(pool, i -> client.load("task/" + i));
+            long load = run(pool, i -> client.load("task/" + i));
+
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < KEYS; i++) {
+                values.put("task/" + i, VALUE);
+            }
+            client.putAll(values);
+            long start = System.nanoTime();
+            client.putAll(values);
+            long putAll = System.nanoTime() - start;
+            client.loadAll(values.keySet());
+            start = System.nanoTime();
+            client.loadAll(values.keySet());
+            long loadAll = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int moved = client.addNode(urls.get(count));
+            long addNode = System.nanoTime() - start;
+
+            System.out.printf("%8d %12.0f %12.0f %12.1f %12.1f %10.1f %14.1f%n", count, OPERATIONS * 1e9 / put,
+                    OPERATIONS * 1e9 / load, putAll / 1e6, loadAll / 1e6, moved * 100.0 / KEYS, addNode / 1e6);
+        } finally {
+            pool.shutdown();
+            servers.forEach(KVServer::stop);
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private interface Operation {
+        void run(int index);
+    }
+
+    private static long run(ExecutorService pool, Operation operation) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            final int index = i;
+            futures.add(pool.submit(() -> operation.run(index)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,43 @@
+package tasktracker.benchmark;
+
+import tasktracker.taskmanager.DurabilityPolicy;
+import tasktracker.taskmanager.FileBackedTaskManager;
+import tasktracker.taskmanager.SnapshotFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* Сравнение CSV и двоичного снимка: время записи (save), время загрузки и размер файла.
+   Запуск: java -Xmx2g -cp target/classes:target/test-classes tasktracker.benchmark.SnapshotFormatBenchmark [строк...] */
+public class SnapshotFormatBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : TimeValidationBenchmark.parseSizes(args);
+        Path dir = Files.createTempDirectory("kanban-snapshot-format");
+
+        System.out.printf("%10s %8s %12s %12s %12s%n", "rows", "format", "file MB", "save ms", "load ms");
+        for (int rows : sizes) {
+            for (SnapshotFormat format : SnapshotFormat.values()) {
+                File file = dir.resolve("snapshot-" + rows + "." + format.name().toLowerCase()).toFile();
+                RecoveryBenchmark.writeSnapshot(file, rows);
+                FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file, false,
+                        DurabilityPolicy.EVERY_OP, format);
+
+                long start = System.nanoTime();
+                manager.save(); // перезаписывает снимок в выбранном формате
+                long saveNanos = System.nanoTime() - start;
+
+                System.gc();
+                start = System.nanoTime();
+                FileBackedTaskManager.loadFromFile(file);
+                long loadNanos = System.nanoTime() - start;
+
+                System.out.printf("%10d %8s %12.1f %12d %12d%n", rows, format, file.length() / 1e6,
+                        saveNanos / 1_000_000, loadNanos / 1_000_000);
+                Files.delete(file.toPath());
+            }
+        }
+    }
+}
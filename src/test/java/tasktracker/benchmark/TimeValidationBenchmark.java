@@ -0,0 +1,69 @@
+package tasktracker.benchmark;
+
+import tasktracker.exceptions.TaskTimeValidationException;
+import tasktracker.taskmanager.InMemoryTaskManager;
+import tasktracker.tasks.Task;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/* Замер стоимости проверки пересечений по времени (taskTimeValidation) в зависимости от размера доски.
+   Запуск: java -cp target/classes:target/test-classes tasktracker.benchmark.TimeValidationBenchmark [размеры...] */
+public class TimeValidationBenchmark {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2300, 1, 1, 0, 0);
+    private static final int PROBES = 100_000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{1_000, 10_000, 50_000, 100_000} : parseSizes(args);
+
+        System.out.printf("%10s %15s %15s %18s%n", "size", "bulk insert ms", "insert ns/op", "validation ns/op");
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Task.setCountTaskId(0);
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+
+        // наполнение доски: часовые задачи через час, каждая проходит проверку пересечений
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            manager.createTask(new Task("task" + i, "desc", format(BASE_TIME.plusHours(2L * i)), 60));
+        }
+        long insertNanos = System.nanoTime() - start;
+
+        // проверка случайных интервалов по уже заполненной доске
+        Random random = new Random(42);
+        Task[] probes = new Task[1024];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = new Task("probe", "desc", format(BASE_TIME.plusMinutes(random.nextInt(size * 120))), 30);
+        }
+        int conflicts = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < PROBES; i++) {
+            try {
+                manager.taskTimeValidation(probes[i & (probes.length - 1)]);
+            } catch (TaskTimeValidationException e) {
+                conflicts++;
+            }
+        }
+        long validationNanos = System.nanoTime() - start;
+
+        System.out.printf("%10d %15d %15d %18d  (conflicts: %d)%n", size, insertNanos / 1_000_000,
+                insertNanos / size, validationNanos / PROBES, conflicts);
+    }
+
+    private static String format(LocalDateTime dateTime) {
+        return dateTime.format(Task.getFormatter());
+    }
+
+    static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,66 @@
+package tasktracker.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntIntMapTest {
+
+    private static final int MISSING = -1;
+
+    // Случайные вставки и удаления (с коллизиями в маленькой таблице) должны давать то же, что HashMap
+    @Test
+    void shouldBehaveLikeHashMapAfterRandomPutsAndRemoves() {
+        IntIntMap map = new IntIntMap(MISSING);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(2_000) - 100; // в том числе 0 и отрицательные
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, MISSING), map.remove(key));
+                expected.remove(key);
+            } else {
+                assertEquals(expected.getOrDefault(key, MISSING), map.put(key, i));
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 1_900; key++) {
+            assertEquals(expected.getOrDefault(key, MISSING), map.get(key));
+        }
+    }
+
+    @Test
+    void zeroKeyShouldBeStoredSeparately() {
+        IntIntMap map = new IntIntMap(MISSING);
+        assertEquals(MISSING, map.get(0));
+
+        map.put(0, 5);
+        map.put(16, 7); // другие ключи не мешают ключу 0
+
+        assertEquals(5, map.get(0));
+        assertEquals(2, map.size());
+        assertEquals(5, map.remove(0));
+        assertEquals(MISSING, map.get(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void clearShouldRemoveAllEntriesAndKeepWorking() {
+        IntIntMap map = new IntIntMap(MISSING);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, i * 2);
+        }
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(MISSING, map.get(10));
+        map.put(10, 1);
+        assertEquals(1, map.get(10));
+    }
+}
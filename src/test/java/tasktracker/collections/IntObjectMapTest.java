@@ -0,0 +1,66 @@
+package tasktracker.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntObjectMapTest {
+
+    // Случайные вставки и удаления (с коллизиями в маленькой таблице) должны давать то же, что HashMap
+    @Test
+    void shouldBehaveLikeHashMapAfterRandomPutsAndRemoves() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(2_000) - 100; // в том числе 0 и отрицательные
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 1_900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void forEachEntryShouldVisitEveryEntryOnce() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, "v" + i);
+        }
+        long[] sum = new long[1];
+        map.forEachEntry((key, value) -> {
+            assertEquals("v" + key, value);
+            sum[0] += key;
+        });
+
+        assertEquals(499_500, sum[0]);
+        assertEquals(1_000, map.values().size());
+    }
+
+    @Test
+    void clearShouldRemoveAllEntries() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(0, "zero");
+        map.put(1, "one");
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertFalse(map.containsKey(0));
+    }
+}
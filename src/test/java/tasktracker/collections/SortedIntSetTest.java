@@ -0,0 +1,53 @@
+package tasktracker.collections;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortedIntSetTest {
+
+    @Test
+    void addShouldKeepValuesSortedAndUnique() {
+        SortedIntSet set = new SortedIntSet();
+        for (int value : new int[]{5, 1, 9, 5, 3}) {
+            set.add(value);
+        }
+
+        assertEquals(4, set.size());
+        assertEquals(1, set.get(0));
+        assertEquals(3, set.get(1));
+        assertEquals(5, set.get(2));
+        assertEquals(9, set.get(3));
+    }
+
+    @Test
+    void indexAfterShouldPointToFirstGreaterValue() {
+        SortedIntSet set = new SortedIntSet();
+        for (int i = 1; i <= 100; i++) {
+            set.add(i * 2);
+        }
+        set.remove(10);
+
+        assertEquals(0, set.indexAfter(0));
+        assertEquals(4, set.indexAfter(8)); // 10 удален, следующее - 12
+        assertEquals(4, set.indexAfter(9));
+        assertEquals(set.size(), set.indexAfter(200));
+        assertFalse(set.contains(10));
+        assertTrue(set.contains(12));
+    }
+
+    @Test
+    void removeIfShouldKeepOrderOfRemainingValues() {
+        SortedIntSet set = new SortedIntSet();
+        for (int i = 1; i <= 10; i++) {
+            set.add(i);
+        }
+
+        assertEquals(5, set.removeIf(value -> value % 2 == 0));
+        assertEquals(5, set.size());
+        assertEquals(7, set.get(3));
+        assertEquals(3, set.indexAfter(5));
+    }
+}
@@ -109,4 +109,4 @@ class HistoryManagerTest {
         assertEquals(task, historyList.get(0), "В истории должна остаться таска.");
         assertEquals(epic, historyList.get(1), "В истории должен остаться эпик.");
     }
-}
\ No newline at end of file
+}
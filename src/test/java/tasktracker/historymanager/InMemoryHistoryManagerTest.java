@@ -0,0 +1,107 @@
+package tasktracker.historymanager;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasktracker.managers.Managers;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ограниченная история на массивах; задачи без времени, поэтому тесты не зависят от текущей даты
+class InMemoryHistoryManagerTest {
+
+    private HistoryManager history;
+    private Task task;
+    private Epic epic;
+    private Subtask subtask;
+
+    @BeforeEach
+    void setUp() {
+        history = Managers.getDefaultHistory();
+        task = new Task("task name", "task desc");
+        epic = new Epic("epic name", "epic desc");
+        subtask = new Subtask("subtask name", "subtask desc", epic);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        Task.setCountTaskId(0);
+    }
+
+    @Test
+    void shouldEvictOldestWhenCapacityExceeded() {
+        history = Managers.getDefaultHistory(2);
+        history.addToHistory(task);
+        history.addToHistory(epic);
+        history.addToHistory(task); // повторный просмотр переносит задачу в конец
+        history.addToHistory(subtask);
+
+        assertEquals(List.of(task, subtask), history.getHistory(), "Должен быть вытеснен самый давний просмотр.");
+    }
+
+    @Test
+    void repeatedRemoveShouldNotBreakHistory() {
+        history.addToHistory(task);
+        history.addToHistory(epic);
+        history.addToHistory(subtask);
+
+        history.remove(epic.getId());
+        history.remove(epic.getId());
+        history.addToHistory(epic);
+
+        assertEquals(List.of(task, subtask, epic), history.getHistory(), "Повторное удаление не должно менять историю.");
+    }
+
+    @Test
+    void getLastViewedShouldReturnMostRecentViewsInOrder() {
+        history.addToHistory(task);
+        history.addToHistory(epic);
+        history.addToHistory(subtask);
+
+        assertEquals(List.of(epic, subtask), history.getLastViewed(2));
+        history.getHistory();
+        assertEquals(List.of(epic, subtask), history.getLastViewed(2)); // из готового снимка
+        assertEquals(List.of(task, epic, subtask), history.getLastViewed(10));
+        assertEquals(List.of(), history.getLastViewed(0));
+    }
+
+    // Случайные просмотры и удаления (с вытеснением и повторным использованием ячеек) против LinkedHashMap
+    @Test
+    void shouldBehaveLikeLinkedHashMapModel() {
+        final int capacity = 50;
+        history = Managers.getDefaultHistory(capacity);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tasks.add(new Task(i + 1, "task" + i, "desc", null));
+        }
+        Map<Integer, Task> expected = new LinkedHashMap<>();
+        Random random = new Random(19);
+        for (int i = 0; i < 20_000; i++) {
+            final Task next = tasks.get(random.nextInt(tasks.size()));
+            if (random.nextInt(4) == 0) {
+                history.remove(next.getId());
+                expected.remove(next.getId());
+            } else {
+                history.addToHistory(next);
+                expected.remove(next.getId());
+                expected.put(next.getId(), next);
+                if (expected.size() > capacity) {
+                    expected.remove(expected.keySet().iterator().next());
+                }
+            }
+            if (i % 100 == 0) {
+                assertEquals(new ArrayList<>(expected.values()), history.getHistory());
+            }
+        }
+        assertEquals(new ArrayList<>(expected.values()), history.getHistory());
+    }
+}
@@ -0,0 +1,176 @@
+package tasktracker.taskmanager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskStatuses;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConcurrentTaskManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2_000;
+
+    private final ConcurrentTaskManager manager = new ConcurrentTaskManager();
+
+    @AfterEach
+    void tearDown() {
+        Task.setCountTaskId(0);
+    }
+
+    @Test
+    void concurrentUpdatesAndReadsShouldKeepManagerConsistent() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("task" + i, "desc");
+            manager.createTask(task);
+            tasks.add(task);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    Task task = tasks.get((thread * OPERATIONS + i) % tasks.size());
+                    if (i % 4 == 0) {
+                        manager.updateTask(new Task(task.getId(), task.getName(), "updated", TaskStatuses.DONE));
+                    } else {
+                        manager.getPrioritizedTasks();
+                        manager.getHistory();
+                    }
+                    manager.getTaskById(task.getId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(); // пробрасывает исключения из потоков
+        }
+        executor.shutdown();
+
+        assertEquals(100, manager.getListAllTasks().size());
+        assertEquals(100, manager.getPrioritizedTasks().size());
+        assertEquals(100, manager.getHistory().size());
+    }
+
+    @Test
+    void concurrentSubtaskUpdatesShouldKeepEpicStatusConsistent() throws Exception {
+        Epic epic = new Epic("epic", "desc");
+        manager.createEpic(epic);
+        List<Subtask> subtasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Subtask subtask = new Subtask("subtask" + i, "desc", epic);
+            manager.createSubtask(subtask);
+            subtasks.add(subtask);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Subtask subtask : subtasks) {
+            futures.add(executor.submit(() -> manager.updateSubtask(new Subtask(subtask.getId(), subtask.getName(),
+                    "done", TaskStatuses.DONE, epic))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Epic restored = manager.read(m -> m.getEpicById(epic.getId()));
+        assertEquals(TaskStatuses.DONE, restored.getStatus());
+        assertEquals(THREADS, manager.getListAllSubtasksByEpic(restored).size());
+    }
+
+    @Test
+    void viewByIdShouldNotWaitForOtherReads() throws Exception {
+        Task task = new Task("task", "desc");
+        manager.createTask(task);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> longRead = executor.submit(() -> manager.read(m -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        inside.await();
+        Future<Task> view = executor.submit(() -> manager.getTaskById(task.getId()));
+
+        try {
+            assertEquals(task, view.get(5, TimeUnit.SECONDS)); // просмотр не ждет окончания чужого чтения
+            assertEquals(List.of(task), manager.getHistory());
+        } finally {
+            release.countDown();
+            longRead.get();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void fileBackedViewShouldNotTakeManagerMonitor(@TempDir Path dir) throws Exception {
+        FileBackedTaskManager fileBacked = new FileBackedTaskManager(dir.resolve("views.csv").toFile(), true,
+                DurabilityPolicy.ON_SHUTDOWN);
+        ConcurrentTaskManager concurrent = new ConcurrentTaskManager(fileBacked);
+        Task task = new Task("task", "desc");
+        concurrent.createTask(task);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> holder = executor.submit(() -> {
+            synchronized (fileBacked) { // как фоновая запись, снимающая состояние менеджера
+                inside.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        inside.await();
+        Future<Task> view = executor.submit(() -> concurrent.getTaskById(task.getId()));
+
+        try {
+            assertEquals(task, view.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            holder.get();
+            executor.shutdown();
+        }
+        fileBacked.close();
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(dir.resolve("views.csv").toFile(), true);
+        assertEquals(List.of(task).toString(), restored.getHistory().toString());
+    }
+
+    @Test
+    void closeShouldWritePendingChangesOfDelegate(@TempDir Path dir) {
+        File file = dir.resolve("close.csv").toFile();
+        ConcurrentTaskManager concurrent = new ConcurrentTaskManager(new FileBackedTaskManager(file, true,
+                DurabilityPolicy.ON_SHUTDOWN));
+        concurrent.createTask(new Task("task", "desc"));
+
+        concurrent.close();
+
+        assertEquals(concurrent.getListAllTasks().toString(),
+                FileBackedTaskManager.loadFromFile(file, true).getListAllTasks().toString());
+    }
+}
@@ -3,17 +3,24 @@ package tasktracker.taskmanager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import tasktracker.exceptions.ManagerSaveException;
 import tasktracker.tasks.Epic;
 import tasktracker.tasks.Subtask;
 import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskIdAllocator;
+import tasktracker.tasks.TaskStatuses;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class FileBackedTaskManagerTest {
     private static final File FILE_PATH = new File("src/test/resources/fileForSaveTest.csv");
@@ -34,8 +41,10 @@ class FileBackedTaskManagerTest {
     }
 
     @AfterEach
-    void tearDown() {
+    void tearDown() throws IOException {
         Task.setCountTaskId(0);
+        Files.deleteIfExists(FileBackedTaskManager.getHistoryFile(FILE_PATH).toPath());
+        Files.deleteIfExists(FileBackedTaskManager.getIdsFile(FILE_PATH).toPath());
     }
 
     /* Дополнительно для FileBackedTasksManager — проверка работы по сохранению и восстановлению состояния.
@@ -50,6 +59,7 @@ class FileBackedTaskManagerTest {
         manager.getTaskById(task.getId());
         manager.getEpicById(epic.getId());
         manager.getSubtaskById(subtask.getId());
+        ((FileBackedTaskManager) manager).save(); // просмотры сами по себе основной файл не перезаписывают
         String expected = "id,type,name,status,description,startTime,duration,epic\n" +
                 "1,TASK,name,NEW,desc,null,0,\n" +
                 "2,EPIC,name,NEW,desc,null,0,\n" +
@@ -127,4 +137,307 @@ class FileBackedTaskManagerTest {
         TaskManager manager2 = FileBackedTaskManager.loadFromFile(FILE_PATH);
         assertEquals(expected, manager2.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void journaledManagerShouldAppendRecordsInsteadOfRewritingFile(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("journal.csv").toFile();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(file, true);
+        Task task1 = new Task("name", "desc");
+        journaled.createTask(task1);
+
+        assertFalse(file.exists());
+        List<String> records = Files.readAllLines(FileBackedTaskManager.getJournalFile(file).toPath());
+        assertEquals(List.of("U," + task1), records);
+    }
+
+    @Test
+    void getByIdShouldNotRewriteFile() throws IOException {
+        String before = Files.readString(FILE_PATH.toPath());
+        manager.getTaskById(task.getId());
+        manager.getEpicById(epic.getId());
+
+        assertEquals(before, Files.readString(FILE_PATH.toPath()));
+        assertFalse(FileBackedTaskManager.getHistoryFile(FILE_PATH).exists());
+    }
+
+    @Test
+    void viewsShouldBeRestoredFromHistoryLog() throws IOException {
+        manager.getTaskById(task.getId());
+        manager.getSubtaskById(subtask.getId());
+        ((FileBackedTaskManager) manager).flush(); // просмотры дописываются в лог истории, а не в основной файл
+
+        List<String> views = Files.readAllLines(FileBackedTaskManager.getHistoryFile(FILE_PATH).toPath());
+        assertEquals(List.of(String.valueOf(task.getId()), String.valueOf(subtask.getId())), views);
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(FILE_PATH);
+        assertEquals(List.of(task, subtask).toString(), restored.getHistory().toString());
+        restored.save();
+        assertFalse(FileBackedTaskManager.getHistoryFile(FILE_PATH).exists());
+    }
+
+    @Test
+    void loadFromFileShouldReplayJournalOverSnapshot(@TempDir Path dir) {
+        File file = dir.resolve("journal.csv").toFile();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(file, true);
+        Task task1 = new Task("task1", "desc");
+        Task task2 = new Task("task2", "desc");
+        Epic epic1 = new Epic("epic1", "desc");
+        journaled.createTask(task1);
+        journaled.createTask(task2);
+        journaled.createEpic(epic1);
+        journaled.save(); // снимок, дальше изменения идут только в журнал
+
+        Subtask subtask1 = new Subtask("subtask1", "desc", epic1);
+        journaled.createSubtask(subtask1);
+        journaled.updateSubtask(new Subtask(subtask1.getId(), "subtask1", "desc", TaskStatuses.DONE, epic1));
+        journaled.removeTaskById(task1.getId());
+        journaled.getEpicById(epic1.getId());
+        journaled.getTaskById(task2.getId());
+        journaled.flush(); // просмотры записываются вместе со следующим изменением или по flush()
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, true);
+        assertEquals(journaled.toString(), restored.toString());
+        assertEquals(journaled.historyToString(), restored.historyToString());
+        assertEquals(TaskStatuses.DONE, restored.getEpicById(epic1.getId()).getStatus());
+    }
+
+    @Test
+    void managersWithOwnAllocatorsShouldNotShareIds(@TempDir Path dir) {
+        File first = dir.resolve("first.csv").toFile();
+        File second = dir.resolve("second.csv").toFile();
+        FileBackedTaskManager firstManager = new FileBackedTaskManager(first, true, DurabilityPolicy.EVERY_OP, 5,
+                1_000, SnapshotFormat.CSV, new TaskIdAllocator());
+        FileBackedTaskManager secondManager = new FileBackedTaskManager(second, true, DurabilityPolicy.EVERY_OP, 5,
+                1_000, SnapshotFormat.CSV, new TaskIdAllocator());
+        firstManager.createTask(new Task(firstManager.generateId(), "first", "desc", TaskStatuses.NEW));
+        firstManager.createTask(new Task(firstManager.generateId(), "first", "desc", TaskStatuses.NEW));
+        secondManager.createTask(new Task(secondManager.generateId(), "second", "desc", TaskStatuses.NEW));
+        Task.setCountTaskId(0); // общий счетчик менеджеров со своим счетчиком не трогает
+
+        assertEquals(3, firstManager.generateId());
+        assertEquals(2, secondManager.generateId());
+        firstManager.close();
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(first, true, DurabilityPolicy.EVERY_OP,
+                SnapshotFormat.CSV, new TaskIdAllocator());
+        assertEquals(3, restored.generateId(), "Счетчик продолжается с границы, записанной при закрытии.");
+        assertEquals(1, Task.getIdAllocator().nextId());
+    }
+
+    @Test
+    void failedSnapshotShouldKeepPreviousSnapshotAndJournal(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("compact.csv").toFile();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(file, true);
+        journaled.createTask(new Task("first", "desc"));
+        journaled.save();
+        journaled.createTask(new Task("second", "desc")); // только в журнале
+        Path blocker = Files.createDirectories(dir.resolve("compact.csv.tmp").resolve("busy"));
+
+        ManagerSaveException e = assertThrows(ManagerSaveException.class, journaled::save);
+        assertTrue(e.getCause() instanceof IOException, "Причина ошибки не должна теряться.");
+
+        assertTrue(FileBackedTaskManager.getJournalFile(file).exists(), "Журнал очищается только после снимка.");
+        assertEquals(journaled.toString(), FileBackedTaskManager.loadFromFile(file, true).toString());
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        journaled.save();
+        assertFalse(FileBackedTaskManager.getJournalFile(file).exists());
+        assertEquals(journaled.toString(), FileBackedTaskManager.loadFromFile(file, true).toString());
+    }
+
+    @Test
+    void onShutdownPolicyShouldWriteOnlyOnClose(@TempDir Path dir) {
+        File file = dir.resolve("onShutdown.csv").toFile();
+        FileBackedTaskManager writeBehind = new FileBackedTaskManager(file, true, DurabilityPolicy.ON_SHUTDOWN);
+        writeBehind.createTask(new Task("task1", "desc"));
+        writeBehind.createTask(new Task("task2", "desc"));
+
+        assertFalse(FileBackedTaskManager.getJournalFile(file).exists());
+
+        writeBehind.close();
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, true);
+        assertEquals(writeBehind.toString(), restored.toString());
+    }
+
+    @Test
+    void intervalPolicyShouldWriteChangesInBackground(@TempDir Path dir) throws InterruptedException {
+        File file = dir.resolve("interval.csv").toFile();
+        FileBackedTaskManager writeBehind = new FileBackedTaskManager(file, true, DurabilityPolicy.INTERVAL,
+                5, 1_000);
+        for (int i = 0; i < 100; i++) {
+            writeBehind.createTask(new Task("task" + i, "desc"));
+        }
+
+        File journalFile = FileBackedTaskManager.getJournalFile(file);
+        for (int i = 0; i < 200 && !journalFile.exists(); i++) {
+            Thread.sleep(10);
+        }
+        writeBehind.flush(); // дожидаемся подтверждения записи всех изменений
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, true);
+        assertEquals(writeBehind.toString(), restored.toString());
+        writeBehind.close();
+    }
+
+    @Test
+    void intervalPolicyShouldRetryFailedWriteWithoutNewChanges(@TempDir Path dir) throws Exception {
+        File file = dir.resolve("retry.csv").toFile();
+        File journalFile = FileBackedTaskManager.getJournalFile(file);
+        Files.createDirectory(journalFile.toPath()); // журнал дописать нельзя
+        FileBackedTaskManager writeBehind = new FileBackedTaskManager(file, true, DurabilityPolicy.INTERVAL,
+                5, 1_000);
+        writeBehind.createTask(new Task("task", "desc"));
+        Thread.sleep(50);
+        Files.delete(journalFile.toPath());
+
+        for (int i = 0; i < 300 && !journalFile.isFile(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(journalFile.isFile(), "Незаписанное изменение должно записаться повторной попыткой.");
+        writeBehind.close();
+    }
+
+    @Test
+    void intervalPolicyShouldWriteChangesAfterClose(@TempDir Path dir) {
+        File file = dir.resolve("closed.csv").toFile();
+        FileBackedTaskManager writeBehind = new FileBackedTaskManager(file, true, DurabilityPolicy.INTERVAL,
+                5, 1_000);
+        writeBehind.createTask(new Task("task1", "desc"));
+        writeBehind.close();
+
+        writeBehind.createTask(new Task("task2", "desc"));
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, true);
+        assertEquals(writeBehind.toString(), restored.toString());
+    }
+
+    @Test
+    void loadFromFileShouldRestoreTasksWithPastStartTime(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("past.csv").toFile();
+        Files.writeString(file.toPath(), "id,type,name,status,description,startTime,duration,epic\n" +
+                "1,TASK,task,DONE,desc,01.02.2020 10:30,60,\n" +
+                "2,EPIC,epic,IN_PROGRESS,desc,01.02.2020 12:00,30,\n" +
+                "3,SUBTASK,subtask,IN_PROGRESS,desc,01.02.2020 12:00,30,2\n" +
+                "\n" +
+                "3,1");
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals("01.02.2020 10:30", restored.getMapOfTasks().get(1).getStartTimeInFormat());
+        assertEquals(2, restored.getMapOfSubtasks().get(3).getEpicId());
+        assertEquals(2, restored.getPrioritizedTasks().size());
+        assertEquals(List.of(3, 1), FileBackedTaskManager.historyFromString(restored.historyToString()));
+        assertFalse(FileBackedTaskManager.getJournalFile(file).exists());
+    }
+
+    @Test
+    void binarySnapshotShouldRestoreTasksAndHistory(@TempDir Path dir) {
+        File file = dir.resolve("board.bin").toFile();
+        FileBackedTaskManager binary = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        Task task = new Task("task, с запятой", "desc\nс переводом строки");
+        binary.createTask(task);
+        Epic epic = new Epic("epic", "desc");
+        binary.createEpic(epic);
+        binary.createSubtask(new Subtask("subtask", "desc", epic));
+        binary.getTaskById(task.getId());
+        binary.save();
+
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, false, DurabilityPolicy.EVERY_OP,
+                SnapshotFormat.BINARY);
+
+        assertEquals(binary.toString(), restored.toString());
+        assertEquals("task, с запятой", restored.getMapOfTasks().get(task.getId()).getName());
+        assertEquals(List.of(task.getId()), FileBackedTaskManager.historyFromString(restored.historyToString()));
+    }
+
+    @Test
+    void binaryJournalShouldRestoreNamesWithCommas(@TempDir Path dir) {
+        File file = dir.resolve("journal.bin").toFile();
+        FileBackedTaskManager binary = new FileBackedTaskManager(file, true, DurabilityPolicy.EVERY_OP, 5, 1_000,
+                SnapshotFormat.BINARY);
+        Task task = new Task("task, с запятой", "desc\nс переводом строки");
+        binary.createTask(task);
+        Epic epic = new Epic("epic,", "desc");
+        binary.createEpic(epic);
+        binary.createSubtask(new Subtask("subtask", "a,b,c", epic));
+
+        assertFalse(file.exists()); // все изменения пока только в журнале
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file, true, DurabilityPolicy.EVERY_OP,
+                SnapshotFormat.BINARY);
+
+        assertEquals(binary.toString(), restored.toString());
+        assertEquals("desc\nс переводом строки", restored.getMapOfTasks().get(task.getId()).getDescription());
+    }
+
+    @Test
+    void binarySnapshotWithWrongChecksumShouldNotBeLoaded(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("broken.bin").toFile();
+        FileBackedTaskManager binary = new FileBackedTaskManager(file, SnapshotFormat.BINARY);
+        binary.createTask(new Task("task", "desc"));
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(file.toPath(), bytes);
+
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(file));
+    }
+
+    @Test
+    void idsOfRemovedTasksShouldNotBeReusedAfterRestart(@TempDir Path dir) {
+        File file = dir.resolve("ids.csv").toFile();
+        FileBackedTaskManager first = new FileBackedTaskManager(file);
+        Task kept = new Task("kept", "desc");
+        first.createTask(kept);
+        Task removed = new Task("removed", "desc");
+        first.createTask(removed);
+        first.removeTaskById(removed.getId());
+
+        Task.setCountTaskId(0); // как после перезапуска
+        FileBackedTaskManager restored = FileBackedTaskManager.loadFromFile(file);
+
+        assertTrue(restored.generateId() > removed.getId());
+    }
+
+    @Test
+    void restoreAndUpdateConstructorsShouldNotUseIds() {
+        final int lastId = Task.getIdAllocator().lastId();
+
+        new Task(1, "task", "desc", TaskStatuses.DONE);
+        new Epic(2, "epic", "desc");
+        new Subtask(3, "subtask", "desc", TaskStatuses.NEW, 2);
+
+        assertEquals(lastId, Task.getIdAllocator().lastId());
+    }
+
+    @Test
+    void closeShouldStoreOnlyIdsOfThisManager(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("own.csv").toFile();
+        FileBackedTaskManager own = new FileBackedTaskManager(file);
+        Task task = new Task("task", "desc");
+        own.createTask(task);
+        FileBackedTaskManager other = new FileBackedTaskManager(dir.resolve("other.csv").toFile());
+        other.createTask(new Task("other", "desc"));
+
+        own.close();
+        other.close();
+
+        assertEquals(String.valueOf(task.getId()),
+                Files.readString(FileBackedTaskManager.getIdsFile(file).toPath()));
+    }
+
+    @Test
+    void closeShouldStoreExactLastId(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("close.csv").toFile();
+        FileBackedTaskManager first = new FileBackedTaskManager(file);
+        Task task = new Task("task", "desc");
+        first.createTask(task);
+        first.close();
+
+        Task.setCountTaskId(0);
+        FileBackedTaskManager.loadFromFile(file);
+
+        assertEquals(String.valueOf(task.getId()),
+                Files.readString(FileBackedTaskManager.getIdsFile(file).toPath()));
+        assertEquals(task.getId() + 1, new Task("next", "desc").getId());
+    }
+}
@@ -0,0 +1,212 @@
+package tasktracker.taskmanager;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasktracker.api.KVClient;
+import tasktracker.api.KVServer;
+import tasktracker.api.KVTaskClient;
+import tasktracker.exceptions.ManagerSaveException;
+import tasktracker.tasks.Epic;
+import tasktracker.tasks.Subtask;
+import tasktracker.tasks.Task;
+import tasktracker.tasks.TaskIdAllocator;
+import tasktracker.tasks.TaskStatuses;
+import tasktracker.tasks.TaskTypes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVTaskManagerTest {
+
+    private Path dir;
+    private KVServer server;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("kv-manager");
+        server = new KVServer(0, dir.toFile(), 2);
+        server.start();
+        url = "http://localhost:" + server.getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        for (File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        Task.setCountTaskId(0);
+    }
+
+    @Test
+    void restoredManagerShouldHaveSameTasksAndHistory() {
+        KVTaskManager manager = new KVTaskManager(url);
+        Task task = new Task("task", "desc");
+        Epic epic = new Epic("epic", "desc");
+        manager.createTask(task);
+        manager.createEpic(epic);
+        Subtask subtask = new Subtask("subtask", "desc", epic);
+        manager.createSubtask(subtask);
+        manager.updateSubtask(new Subtask(subtask.getId(), "subtask", "done", TaskStatuses.DONE, epic.getId()));
+        manager.getSubtaskById(subtask.getId());
+        manager.getTaskById(task.getId());
+        manager.close();
+
+        KVTaskManager restored = new KVTaskManager(url);
+
+        assertEquals(manager.getHistory().toString(), restored.getHistory().toString());
+        assertEquals(manager.getListAllTasks().toString(), restored.getListAllTasks().toString());
+        assertEquals(manager.getListAllEpics().toString(), restored.getListAllEpics().toString());
+        assertEquals(manager.getListAllSubtasks().toString(), restored.getListAllSubtasks().toString());
+        assertEquals(TaskStatuses.DONE, restored.getEpicById(epic.getId()).getStatus(),
+                "Эпик должен сохраниться с пересчитанным статусом.");
+    }
+
+    @Test
+    void removingEpicShouldDeleteKeysOfItsSubtasks() {
+        KVTaskManager manager = new KVTaskManager(url);
+        Epic epic = new Epic("epic", "desc");
+        manager.createEpic(epic);
+        Subtask first = new Subtask("first", "desc", epic);
+        Subtask second = new Subtask("second", "desc", epic);
+        manager.createAll(List.of(first, second));
+
+        manager.removeEpicById(epic.getId());
+
+        KVTaskClient client = new KVTaskClient(url);
+        assertEquals(List.of(), client.keys("epic/"));
+        assertEquals(List.of(), client.keys("subtask/"));
+        assertNull(client.load(KVTaskManager.key(TaskTypes.SUBTASK, first.getId())));
+    }
+
+    @Test
+    void keysOfFailedSyncShouldBeSentWithNextChange() {
+        FailingClient client = new FailingClient(new KVTaskClient(url));
+        KVTaskManager manager = new KVTaskManager(client);
+        Task first = new Task("first", "desc");
+        Task second = new Task("second", "desc");
+
+        client.failing = true;
+        assertThrows(ManagerSaveException.class, () -> manager.createTask(first));
+        client.failing = false;
+        manager.createTask(second);
+
+        KVTaskManager restored = new KVTaskManager(url);
+        assertEquals(manager.getListAllTasks().toString(), restored.getListAllTasks().toString(),
+                "Задача, которую не удалось отправить, должна уйти со следующим изменением.");
+    }
+
+    @Test
+    void viewsShouldBeSentTogetherNotOneByOne() {
+        FailingClient client = new FailingClient(new KVTaskClient(url));
+        KVTaskManager manager = new KVTaskManager(client);
+        Task task = new Task("task", "desc");
+        manager.createTask(task);
+        final int batches = client.batches;
+
+        for (int i = 0; i < KVTaskManager.HISTORY_SYNC_VIEWS - 1; i++) {
+            manager.getTaskById(task.getId());
+        }
+        assertEquals(batches, client.batches, "Просмотры не должны отправлять историю по одному.");
+        manager.getTaskById(task.getId());
+        assertEquals(batches + 1, client.batches);
+
+        manager.getTaskById(task.getId());
+        manager.close();
+        assertEquals(batches + 2, client.batches);
+        assertEquals(manager.getHistory().toString(), new KVTaskManager(url).getHistory().toString());
+    }
+
+    @Test
+    void restartShouldNotReuseIdsOfRemovedTasks() {
+        KVTaskManager manager = new KVTaskManager(url);
+        manager.createTask(new Task("first", "desc"));
+        Task last = new Task("last", "desc");
+        manager.createTask(last);
+        manager.removeTaskById(last.getId());
+        manager.close();
+        Task.setCountTaskId(0); // новый процесс
+
+        new KVTaskManager(url);
+
+        assertTrue(new Task("next", "desc").getId() > last.getId(),
+                "Id удаленной задачи не должен выдаваться повторно.");
+    }
+
+    @Test
+    void restoredManagerShouldAdvanceOnlyItsOwnAllocator() {
+        KVTaskManager manager = new KVTaskManager(new KVTaskClient(url), new TaskIdAllocator());
+        manager.createTask(new Task(manager.generateId(), "task", "desc", TaskStatuses.NEW));
+        manager.close();
+        Task.setCountTaskId(0);
+
+        KVTaskManager restored = new KVTaskManager(new KVTaskClient(url), new TaskIdAllocator());
+
+        assertEquals(2, restored.generateId());
+        assertEquals(1, Task.getIdAllocator().nextId(), "Общий счетчик при загрузке не сдвигается.");
+    }
+
+    // Клиент, который по флагу отвечает ошибкой на пакетную запись и считает отправленные пакеты
+    private static class FailingClient implements KVClient {
+
+        private final KVClient delegate;
+        private boolean failing;
+        private int batches;
+
+        FailingClient(KVClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(String key, String json) {
+            delegate.put(key, json);
+        }
+
+        @Override
+        public String load(String key) {
+            return delegate.load(key);
+        }
+
+        @Override
+        public void delete(String key) {
+            delegate.delete(key);
+        }
+
+        @Override
+        public List<String> keys(String prefix) {
+            return delegate.keys(prefix);
+        }
+
+        @Override
+        public void putAll(Map<String, String> values) {
+            if (failing) {
+                throw new ManagerSaveException("Сервер недоступен");
+            }
+            batches++;
+            delegate.putAll(values);
+        }
+
+        @Override
+        public Map<String, String> loadAll(Collection<String> keys) {
+            return delegate.loadAll(keys);
+        }
+    }
+}
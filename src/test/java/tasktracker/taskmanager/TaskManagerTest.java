@@ -5,6 +5,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tasktracker.exceptions.NonExistentTaskException;
+import tasktracker.exceptions.TaskTimeValidationException;
 import tasktracker.managers.Managers;
 import tasktracker.tasks.Epic;
 import tasktracker.tasks.Subtask;
@@ -12,6 +13,9 @@ import tasktracker.tasks.Task;
 import tasktracker.tasks.TaskStatuses;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -172,6 +176,18 @@ class TaskManagerTest<T extends TaskManager> {
         assertEquals(subtask, manager.getSubtaskById(subtask.getId()));
     }
 
+    // Подзадача изменена на месте и передана в updateSubtask тем же объектом
+    @Test
+    void updateSubtaskChangedInPlaceShouldRecalculateEpicStatus() {
+        subtask.setStatus(TaskStatuses.DONE);
+        manager.updateSubtask(subtask);
+        assertEquals(TaskStatuses.DONE, manager.getEpicById(epic.getId()).getStatus());
+
+        subtask.setStatus(TaskStatuses.IN_PROGRESS);
+        manager.updateSubtask(subtask);
+        assertEquals(TaskStatuses.IN_PROGRESS, manager.getEpicById(epic.getId()).getStatus());
+    }
+
     @Test
     void updateSubtaskWhenMapOfSubtasksIsEmpty() {
         manager.deleteAllSubtasks();
@@ -356,4 +372,273 @@ class TaskManagerTest<T extends TaskManager> {
         assertEquals("11.11.2022 23:00", manager.getEpicById(epic.getId()).getEndTimeInFormat());
         assertEquals(60, manager.getEpicById(epic.getId()).getDuration());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldNotCreateTaskWhenTimeOverlaps() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        Task task2 = new Task("task2", "desc", "12.12.2121 12:30", 60);
+        manager.createTask(task1);
+
+        assertThrows(TaskTimeValidationException.class, () -> manager.createTask(task2));
+        assertNull(manager.getTaskById(task2.getId()));
+    }
+
+    @Test
+    void shouldCreateTaskRightAfterAnotherTask() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        Task task2 = new Task("task2", "desc", "12.12.2121 13:00", 60);
+        manager.createTask(task1);
+        manager.createTask(task2);
+
+        assertEquals(task2, manager.getTaskById(task2.getId()));
+    }
+
+    @Test
+    void updateTaskShouldNotOverlapWithItself() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        manager.createTask(task1);
+        Task updated = new Task(task1.getId(), "task1", "desc", TaskStatuses.IN_PROGRESS,
+                "12.12.2121 12:30", 60);
+        manager.updateTask(updated);
+
+        assertEquals(updated, manager.getTaskById(task1.getId()));
+    }
+
+    @Test
+    void failedUpdateShouldKeepOldTaskInSchedule() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        Task task2 = new Task("task2", "desc", "12.12.2121 14:00", 60);
+        manager.createTask(task1);
+        manager.createTask(task2);
+        Task updated = new Task(task2.getId(), "task2", "desc", TaskStatuses.NEW, "12.12.2121 12:30", 60);
+
+        assertThrows(TaskTimeValidationException.class, () -> manager.updateTask(updated));
+        assertTrue(manager.getPrioritizedTasks().contains(task2));
+        // старый интервал второй задачи все еще занят
+        Task task3 = new Task("task3", "desc", "12.12.2121 14:30", 60);
+        assertThrows(TaskTimeValidationException.class, () -> manager.createTask(task3));
+    }
+
+    @Test
+    void removedTaskShouldFreeItsTime() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        manager.createTask(task1);
+        manager.removeTaskById(task1.getId());
+
+        Task task2 = new Task("task2", "desc", "12.12.2121 12:00", 60);
+        manager.createTask(task2);
+        assertEquals(task2, manager.getTaskById(task2.getId()));
+    }
+
+    @Test
+    void removedEpicShouldFreeSubtasksTime() {
+        Subtask subtaskWithTime = new Subtask("name", "desc", epic, "12.12.2121 12:00", 60);
+        manager.createSubtask(subtaskWithTime);
+        manager.removeEpicById(epic.getId());
+
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        manager.createTask(task1);
+        assertEquals(task1, manager.getTaskById(task1.getId()));
+    }
+
+    @Test
+    void tasksPageShouldReturnTasksAfterCursorInIdOrder() {
+        Task task2 = new Task("task2", "desc");
+        Task task3 = new Task("task3", "desc");
+        manager.createTask(task3);
+        manager.createTask(task2);
+
+        assertEquals(List.of(task, task2), manager.getTasksPage(0, 2));
+        assertEquals(List.of(task3), manager.getTasksPage(task2.getId(), 2));
+        assertEquals(List.of(), manager.getTasksPage(task3.getId(), 2));
+    }
+
+    @Test
+    void removedTaskShouldNotBeInPage() {
+        Task task2 = new Task("task2", "desc");
+        manager.createTask(task2);
+        manager.removeTaskById(task.getId());
+
+        assertEquals(List.of(task2), manager.getTasksPage(0, 10));
+    }
+
+    @Test
+    void allTypesPageShouldMergeTypesInIdOrder() {
+        Task task2 = new Task("task2", "desc");
+        manager.createTask(task2);
+
+        assertEquals(List.of(task, epic), manager.getAllTasksAllTypesPage(0, 2));
+        assertEquals(List.of(subtask, task2), manager.getAllTasksAllTypesPage(epic.getId(), 10));
+        assertEquals(List.of(epic), manager.getEpicsPage(0, 10));
+        assertEquals(List.of(subtask), manager.getSubtasksPage(0, 10));
+    }
+
+    @Test
+    void versionsShouldGrowOnlyForChangedCollections() {
+        long tasksVersion = manager.getTasksVersion();
+        long epicsVersion = manager.getEpicsVersion();
+        long historyVersion = manager.getHistoryVersion();
+
+        manager.updateTask(new Task(task.getId(), "name", "updated", TaskStatuses.DONE));
+        assertTrue(manager.getTasksVersion() > tasksVersion);
+        assertEquals(epicsVersion, manager.getEpicsVersion());
+
+        manager.getTaskById(task.getId());
+        assertTrue(manager.getHistoryVersion() > historyVersion);
+    }
+
+    @Test
+    void subtaskChangeShouldChangeVersionOfItsEpic() {
+        Epic otherEpic = new Epic("other", "desc");
+        manager.createEpic(otherEpic);
+        long epicVersion = manager.getEpicVersion(epic.getId());
+        long otherVersion = manager.getEpicVersion(otherEpic.getId());
+
+        manager.updateSubtask(new Subtask(subtask.getId(), "name", "desc", TaskStatuses.DONE, epic));
+
+        assertTrue(manager.getEpicVersion(epic.getId()) > epicVersion);
+        assertEquals(otherVersion, manager.getEpicVersion(otherEpic.getId()));
+        manager.removeEpicById(epic.getId());
+        assertEquals(0, manager.getEpicVersion(epic.getId()));
+    }
+
+    @Test
+    void createAllShouldRejectWholeBatchWhenTasksInBatchOverlap() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        Task task2 = new Task("task2", "desc", "12.12.2121 15:00", 60);
+        Task task3 = new Task("task3", "desc", "12.12.2121 12:30", 60);
+
+        assertThrows(TaskTimeValidationException.class, () -> manager.createAll(List.of(task1, task2, task3)));
+        assertNull(manager.getTaskById(task1.getId()));
+        assertNull(manager.getTaskById(task2.getId()));
+        assertEquals(2, manager.getPrioritizedTasks().size()); // задача и подзадача из setUp
+    }
+
+    @Test
+    void createAllShouldCreateEpicWithItsSubtasks() {
+        Epic epic2 = new Epic("epic2", "desc");
+        Subtask subtask2 = new Subtask(Task.getIdAllocator().nextId(), "subtask2", "desc", TaskStatuses.DONE,
+                epic2.getId());
+        Task task2 = new Task("task2", "desc");
+
+        manager.createAll(List.of(epic2, subtask2, task2));
+
+        assertEquals(task2, manager.getTaskById(task2.getId()));
+        assertEquals(List.of(subtask2), List.copyOf(manager.getEpicById(epic2.getId()).getEpicSubtasks().values()));
+        assertEquals(TaskStatuses.DONE, manager.getEpicById(epic2.getId()).getStatus());
+    }
+
+    // Задачи пакета меняются местами: старые интервалы задач пакета не считаются пересечением
+    @Test
+    void updateAllShouldSwapTimesOfTwoTasks() {
+        Task task1 = new Task("task1", "desc", "12.12.2121 12:00", 60);
+        Task task2 = new Task("task2", "desc", "12.12.2121 13:00", 60);
+        manager.createAll(List.of(task1, task2));
+        Task moved1 = new Task(task1.getId(), "task1", "desc", TaskStatuses.NEW, "12.12.2121 13:00", 60);
+        Task moved2 = new Task(task2.getId(), "task2", "desc", TaskStatuses.NEW, "12.12.2121 12:00", 60);
+
+        manager.updateAll(List.of(moved1, moved2));
+
+        assertEquals(moved1, manager.getTaskById(task1.getId()));
+        // при пересечении не применяется и остальная часть пакета
+        assertThrows(TaskTimeValidationException.class, () -> manager.updateAll(List.of(
+                new Task(task1.getId(), "task1", "desc", TaskStatuses.DONE, "12.12.2121 13:00", 60),
+                new Task(task.getId(), "name", "desc", TaskStatuses.DONE, "12.12.2121 12:30", 60))));
+        assertEquals(TaskStatuses.NEW, manager.getTaskById(task1.getId()).getStatus());
+        assertEquals(TaskStatuses.NEW, manager.getTaskById(task.getId()).getStatus());
+    }
+
+    // Сдвиг подряд идущих задач пакетом; после отклоненного пакета старые интервалы по-прежнему проверяются
+    @Test
+    void updateAllShouldShiftAdjacentTasksAndKeepOldIntervalsWhenRejected() {
+        List<Task> tasks = new ArrayList<>();
+        List<Task> shifted = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Task next = new Task("task" + i, "desc", String.format("12.12.2121 %02d:%02d", i / 6, i % 6 * 10), 10);
+            tasks.add(next);
+            shifted.add(new Task(next.getId(), next.getName(), "desc", TaskStatuses.NEW,
+                    String.format("13.12.2121 %02d:%02d", i / 6, i % 6 * 10), 10));
+        }
+        manager.createAll(tasks);
+
+        manager.updateAll(shifted);
+        assertEquals(shifted.get(49), manager.getTaskById(tasks.get(49).getId()));
+
+        assertThrows(TaskTimeValidationException.class, () -> manager.updateAll(List.of(
+                new Task(tasks.get(0).getId(), "task0", "desc", TaskStatuses.NEW, "14.12.2121 10:00", 10),
+                new Task(tasks.get(1).getId(), "task1", "desc", TaskStatuses.NEW, "14.12.2121 10:05", 10))));
+        assertThrows(TaskTimeValidationException.class,
+                () -> manager.createTask(new Task("overlap", "desc", "13.12.2121 00:05", 10)));
+    }
+
+    @Test
+    void updateAllFailingMidwayShouldKeepIntervalsOfTasksNotApplied() {
+        Task first = new Task("first", "desc", "15.12.2121 10:00", 30);
+        Task second = new Task("second", "desc", "15.12.2121 12:00", 30);
+        manager.createAll(List.of(first, second));
+        AtomicBoolean failed = new AtomicBoolean();
+        manager.addChangeListener((type, epicId) -> {
+            if (failed.compareAndSet(false, true)) { // падает на первой задаче пакета
+                throw new IllegalStateException("подписчик упал");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> manager.updateAll(List.of(
+                new Task(first.getId(), "first", "updated", TaskStatuses.NEW, "15.12.2121 10:00", 30),
+                new Task(second.getId(), "second", "updated", TaskStatuses.NEW, "15.12.2121 12:00", 30))));
+
+        assertEquals("updated", manager.getTaskById(first.getId()).getDescription());
+        assertEquals("desc", manager.getTaskById(second.getId()).getDescription());
+        assertThrows(TaskTimeValidationException.class,
+                () -> manager.createTask(new Task("overlap", "desc", "15.12.2121 12:10", 10)));
+        assertThrows(TaskTimeValidationException.class,
+                () -> manager.createTask(new Task("overlap", "desc", "15.12.2121 10:10", 10)));
+    }
+
+    @Test
+    void removeAllShouldRemoveTasksOfAllTypesOrNothing() {
+        assertThrows(NonExistentTaskException.class, () -> manager.removeAll(List.of(task.getId(), 100_000)));
+        assertEquals(task, manager.getTaskById(task.getId()));
+
+        manager.removeAll(List.of(subtask.getId(), task.getId(), epic.getId()));
+
+        assertTrue(manager.getAllTasksAllTypes().isEmpty());
+        assertTrue(manager.getPrioritizedTasks().isEmpty());
+    }
+
+    // Подзадача, перенесенная в другой эпик, не удаляется вместе со старым эпиком
+    @Test
+    void removeEpicShouldRemoveOnlyItsCurrentSubtasks() {
+        Epic epic2 = new Epic("epic2", "desc");
+        manager.createEpic(epic2);
+        Subtask subtask2 = new Subtask("subtask2", "desc", epic);
+        Subtask subtask3 = new Subtask("subtask3", "desc", epic2);
+        manager.createSubtask(subtask2);
+        manager.createSubtask(subtask3);
+        Subtask moved = new Subtask(subtask.getId(), "moved", "desc", TaskStatuses.NEW, epic2);
+        manager.updateSubtask(moved);
+
+        manager.removeEpicById(epic.getId());
+
+        assertNull(manager.getSubtaskById(subtask2.getId()));
+        assertEquals(List.of(moved, subtask3), manager.getSubtasksPage(0, 10));
+        assertEquals(List.of(task, moved, epic2, subtask3), manager.getAllTasksAllTypesPage(0, 10));
+        manager.removeEpicById(epic2.getId());
+        assertTrue(manager.getListAllSubtasks().isEmpty());
+        assertEquals(List.of(), manager.getSubtasksPage(0, 10));
+    }
+
+    @Test
+    void getLastViewedShouldReturnRecentViewsAndSnapshotShouldNotChange() {
+        manager.getTaskById(task.getId());
+        manager.getEpicById(epic.getId());
+        final List<Task> snapshot = manager.getHistory();
+        manager.getSubtaskById(subtask.getId());
+
+        assertEquals(List.of(task, epic), snapshot, "Снимок истории не должен меняться после новых просмотров.");
+        assertEquals(List.of(epic, subtask), manager.getLastViewed(2));
+        assertEquals(List.of(task, epic, subtask), manager.getLastViewed(10));
+        assertTrue(manager.getLastViewed(0).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> manager.getHistory().clear());
+    }
+}
@@ -5,7 +5,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class EpicTest {
 
@@ -71,4 +74,33 @@ class EpicTest {
         epic.addSubtask(subtask2);
         assertEquals(TaskStatuses.IN_PROGRESS, epic.getStatus());
     }
-}
\ No newline at end of file
+
+    // Время эпика после замены и удаления подзадач (в том числе с одинаковым началом)
+    @Test
+    void calculateEpicDurationWhenSubtasksReplacedAndDeleted() {
+        LocalDateTime start = LocalDateTime.of(2121, 12, 12, 12, 0);
+        Subtask early = new Subtask(subtask1.getId(), "early", "desc", TaskStatuses.DONE, epic.getId(), start, 60);
+        Subtask late = new Subtask(subtask2.getId(), "late", "desc", TaskStatuses.DONE, epic.getId(),
+                start.plusHours(5), 30);
+        Subtask sameStart = new Subtask(100, "same", "desc", TaskStatuses.DONE, epic.getId(), start, 10);
+        epic.addSubtask(early);
+        epic.addSubtask(late);
+        epic.addSubtask(sameStart);
+        assertEquals(start, epic.getStartTime());
+        assertEquals(start.plusHours(5).plusMinutes(30), epic.getEndTime());
+        assertEquals(100, epic.getDuration());
+        assertEquals(TaskStatuses.DONE, epic.getStatus());
+
+        epic.deleteSubtask(early.getId());
+        assertEquals(start, epic.getStartTime()); // у оставшейся подзадачи то же начало
+        epic.addSubtask(new Subtask(late.getId(), "late", "desc", TaskStatuses.NEW, epic.getId(),
+                start.plusHours(1), 30));
+        assertEquals(start.plusHours(1).plusMinutes(30), epic.getEndTime());
+        assertEquals(40, epic.getDuration());
+        assertEquals(TaskStatuses.IN_PROGRESS, epic.getStatus());
+
+        epic.clearSubtask();
+        assertNull(epic.getStartTime());
+        assertEquals(0, epic.getDuration());
+    }
+}